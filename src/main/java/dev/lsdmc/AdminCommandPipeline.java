@@ -0,0 +1,113 @@
+package dev.lsdmc;
+
+import dev.lsdmc.utils.Constants;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.TextColor;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Runs admin commands in two stages: lookups that may block (offline name resolution, loading
+ * players from a backend) run on a small worker pool, and only the final step that changes
+ * storage data, opens a GUI or sends the reply runs on the main thread. The final step is
+ * skipped if the admin has logged off in the meantime.
+ */
+public final class AdminCommandPipeline {
+  private final StorageSlots plugin;
+
+  private final StorageManager storageManager;
+
+  private final StorageConfig config;
+
+  private final ExecutorService workers;
+
+  public AdminCommandPipeline(StorageSlots plugin, StorageManager storageManager, StorageConfig config) {
+    this.plugin = plugin;
+    this.storageManager = storageManager;
+    this.config = config;
+    AtomicInteger counter = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(2, runnable -> {
+      Thread thread = new Thread(runnable, "StorageSlots-Admin-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Resolves {@code targetName} and hands the UUID to {@code apply} on the main thread, or
+   * tells the admin the player was not found. Online players resolve immediately; everyone
+   * else is looked up on a worker thread.
+   */
+  public void withTarget(Player admin, String action, String targetName, BiConsumer<Player, UUID> apply) {
+    Player online = Bukkit.getPlayer(targetName);
+    if (online != null) {
+      apply.accept(admin, online.getUniqueId());
+      return;
+    }
+    run(admin, action, () -> this.storageManager.findOfflinePlayerUUID(targetName), (sender, targetId) -> {
+      if (targetId == null) {
+        sender.sendMessage(this.config.getMessage("player-not-found"));
+        return;
+      }
+      apply.accept(sender, targetId);
+    });
+  }
+
+  /**
+   * Runs {@code lookup} on a worker thread and passes its result to {@code apply} on the main thread.
+   */
+  public <T> void run(Player admin, String action, Callable<T> lookup, BiConsumer<Player, T> apply) {
+    UUID adminId = admin.getUniqueId();
+    CompletableFuture<T> stage;
+    try {
+      stage = CompletableFuture.supplyAsync(() -> {
+        try {
+          return lookup.call();
+        } catch (Exception e) {
+          throw new IllegalStateException(e.getMessage(), e);
+        }
+      }, this.workers);
+    } catch (RejectedExecutionException e) {
+      admin.sendMessage(this.config.getMessage("errors.data-operation-failed"));
+      return;
+    }
+    stage.whenComplete((result, error) -> {
+      if (!this.plugin.isEnabled())
+        return;
+      Bukkit.getScheduler().runTask((Plugin)this.plugin, () -> {
+        Player sender = Bukkit.getPlayer(adminId);
+        if (sender == null)
+          return;
+        if (error != null) {
+          fail(sender, action, error);
+          return;
+        }
+        try {
+          apply.accept(sender, result);
+        } catch (Exception e) {
+          fail(sender, action, e);
+        }
+      });
+    });
+  }
+
+  private void fail(Player admin, String action, Throwable error) {
+    Throwable cause = (error.getCause() != null) ? error.getCause() : error;
+    this.plugin.getComponentLogger().error(Component.text("Error " + action + ": " + cause.getMessage())
+        .color((TextColor)Constants.Colors.ERROR));
+    admin.sendMessage(this.config.getMessage("errors.data-operation-failed"));
+  }
+
+  public void shutdown() {
+    this.workers.shutdownNow();
+  }
+}
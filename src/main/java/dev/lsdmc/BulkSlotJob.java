@@ -0,0 +1,345 @@
+package dev.lsdmc;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Grants or revokes one slot for every player matched by a source: a LuckPerms group
+ * ({@code group:<name>}), a permission node ({@code perm:<node>}) or a file of names or UUIDs in
+ * the plugin's {@code bulk} folder ({@code file:<name>}). Offline players are included. Group and
+ * permission sources follow one level of inheritance: a player counts if they hold the node, or
+ * are directly in a group that holds it, but not through a parent of that group.
+ *
+ * <p>Targets are resolved on an admin worker thread. They are then processed on the main thread
+ * in chunks; each chunk is written to storage.yml in one flush, and the next chunk starts once
+ * that flush has completed, so a large job never holds the main thread for long.
+ */
+public final class BulkSlotJob {
+  public enum Action {
+    GIVE("give"),
+    REMOVE("remove");
+
+    private final String label;
+
+    Action(String label) {
+      this.label = label;
+    }
+
+    public String getLabel() {
+      return this.label;
+    }
+
+    public static Action fromString(String value) {
+      for (Action action : values()) {
+        if (action.label.equalsIgnoreCase(value))
+          return action;
+      }
+      return null;
+    }
+  }
+
+  private final StorageSlots plugin;
+
+  private final StorageDataManager dataManager;
+
+  private final StorageConfig config;
+
+  private final UUID adminId;
+
+  private final Action action;
+
+  private final int slot;
+
+  private final String source;
+
+  private final List<UUID> targets;
+
+  private final int unresolved;
+
+  private final int chunkSize;
+
+  private int position;
+
+  private int changed;
+
+  private int skipped;
+
+  // Changed players whose chunk could not be written; they stay pending for the next save
+  private int unsaved;
+
+  private boolean running;
+
+  // Targets that do not meet the slot's rank, once the batched check has completed; -1 until then
+  private int belowRank = -1;
+
+  private boolean rankReported;
+
+  private BulkSlotJob(StorageSlots plugin, UUID adminId, Action action, int slot, String source, Targets targets) {
+    this.plugin = plugin;
+    this.dataManager = plugin.getStorageManager().getDataManager();
+    this.config = plugin.getConfigManager();
+    this.adminId = adminId;
+    this.action = action;
+    this.slot = slot;
+    this.source = source;
+    this.targets = targets.playerIds;
+    this.unresolved = targets.unresolved;
+    this.chunkSize = this.config.getBulkChunkSize();
+  }
+
+  /**
+   * Checks that {@code source} names a supported kind of source, without resolving it.
+   */
+  public static boolean isValidSource(String source) {
+    int separator = source.indexOf(':');
+    if (separator <= 0 || separator == source.length() - 1)
+      return false;
+    String kind = source.substring(0, separator).toLowerCase(Locale.ROOT);
+    return kind.equals("group") || kind.equals("perm") || kind.equals("file");
+  }
+
+  /**
+   * Resolves {@code source} to player UUIDs. Blocks on LuckPerms or file IO, so it must not run
+   * on the main thread.
+   */
+  public static Targets resolve(StorageSlots plugin, String source) throws Exception {
+    int separator = source.indexOf(':');
+    String kind = source.substring(0, separator).toLowerCase(Locale.ROOT);
+    String value = source.substring(separator + 1);
+    StoragePermissionManager permissionManager = plugin.getPermissionManager();
+    switch (kind) {
+      case "group":
+        if (permissionManager == null)
+          throw new IllegalStateException("LuckPerms is required for group sources");
+        return new Targets(new ArrayList<>(permissionManager.findPlayersWithNode("group." + value.toLowerCase(Locale.ROOT)).get()), 0);
+      case "perm":
+        if (permissionManager == null)
+          throw new IllegalStateException("LuckPerms is required for permission sources");
+        return new Targets(new ArrayList<>(permissionManager.findPlayersWithNode(value).get()), 0);
+      case "file":
+        return readFile(plugin, value);
+      default:
+        throw new IllegalArgumentException("Unknown bulk source: " + source);
+    }
+  }
+
+  private static Targets readFile(StorageSlots plugin, String name) throws IOException {
+    Path folder = plugin.getDataFolder().toPath().resolve("bulk").normalize();
+    Path file = folder.resolve(name).normalize();
+    if (!file.startsWith(folder))
+      throw new IllegalArgumentException("Bulk files must be inside " + folder);
+    if (!Files.isRegularFile(file))
+      throw new IOException("Bulk file not found: " + file);
+    StorageManager storageManager = plugin.getStorageManager();
+    Set<UUID> playerIds = new LinkedHashSet<>();
+    int unresolved = 0;
+    for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+      String entry = line.trim();
+      if (entry.isEmpty() || entry.startsWith("#"))
+        continue;
+      UUID playerId = parseUuid(entry);
+      if (playerId == null)
+        playerId = storageManager.findOfflinePlayerUUID(entry);
+      if (playerId != null) {
+        playerIds.add(playerId);
+      } else {
+        unresolved++;
+      }
+    }
+    return new Targets(new ArrayList<>(playerIds), unresolved);
+  }
+
+  private static UUID parseUuid(String value) {
+    if (value.length() != 36)
+      return null;
+    try {
+      return UUID.fromString(value);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Creates and starts a job for already resolved targets. Must be called on the main thread.
+   */
+  public static BulkSlotJob start(StorageSlots plugin, Player admin, Action action, int slot, String source, Targets targets) {
+    BulkSlotJob job = new BulkSlotJob(plugin, admin.getUniqueId(), action, slot, source, targets);
+    job.running = true;
+    admin.sendMessage(job.config.getMessage("bulk-started", Map.of(
+            "action", action.getLabel(),
+            "slot", String.valueOf(slot + 1),
+            "total", String.valueOf(job.targets.size()),
+            "source", source)));
+    plugin.getLogger().info("Bulk " + action.getLabel() + " of slot " + (slot + 1) + " started by " + admin.getName()
+        + " for " + job.targets.size() + " players from " + source);
+    if (action == Action.GIVE)
+      job.checkRanks();
+    job.runChunk();
+    return job;
+  }
+
+  public boolean isRunning() {
+    return this.running;
+  }
+
+  private void runChunk() {
+    if (!this.plugin.isEnabled()) {
+      this.running = false;
+      return;
+    }
+    int end = Math.min(this.position + this.chunkSize, this.targets.size());
+    List<UUID> touched = new ArrayList<>(end - this.position);
+    for (; this.position < end; this.position++) {
+      UUID playerId = this.targets.get(this.position);
+      boolean applied;
+      if (this.action == Action.GIVE) {
+        PlayerStorageData data = this.dataManager.getPlayerData(playerId);
+        applied = !data.hasSlotUnlocked(this.slot);
+        if (applied)
+          data.unlockSlot(this.slot);
+      } else {
+        // A player with no storage has nothing to remove; don't create an entry just to find that out
+        PlayerStorageData data = this.dataManager.findPlayerData(playerId);
+        // Same rule as /removeslot: never drop items along with the slot
+        applied = data != null && data.hasSlotUnlocked(this.slot) && data.getItem(this.slot) == null;
+        if (applied)
+          data.lockSlot(this.slot);
+      }
+      if (applied) {
+        touched.add(playerId);
+        this.changed++;
+      } else {
+        this.skipped++;
+      }
+    }
+    this.dataManager.flushPlayers(touched).whenComplete((written, error) -> {
+      if (!this.plugin.isEnabled())
+        return;
+      boolean failed = error != null || !written.booleanValue();
+      Bukkit.getScheduler().runTask((Plugin)this.plugin, () -> {
+        if (failed)
+          flushFailed(touched, error);
+        afterFlush();
+      });
+    });
+  }
+
+  /**
+   * The chunk's changes stay in memory and pending, so the next save retries them. The job goes
+   * on, but the admin is told storage.yml is behind in case the server stops before then.
+   */
+  private void flushFailed(List<UUID> touched, Throwable error) {
+    // A failed write has already put them back as pending; an exception may not have
+    for (UUID playerId : touched)
+      this.dataManager.markDirty(playerId);
+    this.unsaved += touched.size();
+    this.plugin.getLogger().warning("Bulk " + this.action.getLabel() + " of slot " + (this.slot + 1) + " could not write storage.yml for "
+        + touched.size() + " players" + ((error != null) ? (": " + error.getMessage()) : "") + "; they will be saved with the next save");
+    Player admin = Bukkit.getPlayer(this.adminId);
+    if (admin == null)
+      return;
+    admin.sendMessage(this.config.getMessage("bulk-flush-failed", Map.of(
+            "action", this.action.getLabel(),
+            "slot", String.valueOf(this.slot + 1),
+            "count", String.valueOf(touched.size()))));
+  }
+
+  private void afterFlush() {
+    if (this.position < this.targets.size()) {
+      report("bulk-progress");
+      runChunk();
+      return;
+    }
+    this.running = false;
+    report("bulk-complete");
+    this.plugin.getLogger().info("Bulk " + this.action.getLabel() + " of slot " + (this.slot + 1) + " from " + this.source
+        + " finished: " + this.changed + " changed, " + this.skipped + " skipped, " + this.unresolved + " not found"
+        + ((this.unsaved > 0) ? (", " + this.unsaved + " not yet written to storage.yml") : ""));
+    if (this.belowRank >= 0)
+      reportBelowRank();
+  }
+
+  /**
+   * A give skips the rank a slot normally requires for purchase, so the admin is told how many
+   * targets lack it, as /listslots would flag for each of them. Offline targets are loaded from
+   * LuckPerms in one batch while the job runs.
+   */
+  private void checkRanks() {
+    String rank = this.config.getRequiredRank(this.slot);
+    StoragePermissionManager permissionManager = this.plugin.getPermissionManager();
+    if (rank == null || rank.isEmpty() || permissionManager == null || this.targets.isEmpty())
+      return;
+    permissionManager.checkRankRequirement(this.targets, rank).whenComplete((results, error) -> {
+      if (error != null) {
+        this.plugin.getLogger().warning("Could not check ranks for bulk " + this.action.getLabel() + " of slot " + (this.slot + 1)
+            + ": " + error.getMessage());
+        return;
+      }
+      int below = 0;
+      for (Boolean meets : results.values()) {
+        if (!meets.booleanValue())
+          below++;
+      }
+      this.belowRank = below;
+      if (!this.running)
+        reportBelowRank();
+    });
+  }
+
+  private void reportBelowRank() {
+    if (this.rankReported || this.belowRank == 0)
+      return;
+    this.rankReported = true;
+    String rank = this.config.getRankDisplayName(this.config.getRequiredRank(this.slot));
+    this.plugin.getLogger().info(this.belowRank + " players given slot " + (this.slot + 1) + " from " + this.source + " do not have " + rank);
+    Player admin = Bukkit.getPlayer(this.adminId);
+    if (admin == null)
+      return;
+    admin.sendMessage(this.config.getMessage("bulk-below-rank", Map.of(
+            "count", String.valueOf(this.belowRank),
+            "total", String.valueOf(this.targets.size()),
+            "slot", String.valueOf(this.slot + 1),
+            "rank", rank)));
+  }
+
+  private void report(String key) {
+    Player admin = Bukkit.getPlayer(this.adminId);
+    if (admin == null)
+      return;
+    admin.sendMessage(this.config.getMessage(key, Map.of(
+            "action", this.action.getLabel(),
+            "slot", String.valueOf(this.slot + 1),
+            "done", String.valueOf(this.position),
+            "total", String.valueOf(this.targets.size()),
+            "changed", String.valueOf(this.changed),
+            "skipped", String.valueOf(this.skipped),
+            "unresolved", String.valueOf(this.unresolved))));
+  }
+
+  public static final class Targets {
+    private final List<UUID> playerIds;
+
+    private final int unresolved;
+
+    public Targets(List<UUID> playerIds, int unresolved) {
+      this.playerIds = playerIds;
+      this.unresolved = unresolved;
+    }
+
+    public int size() {
+      return this.playerIds.size();
+    }
+  }
+}
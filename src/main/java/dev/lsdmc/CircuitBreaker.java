@@ -0,0 +1,196 @@
+package dev.lsdmc;
+
+/**
+ * Count-based circuit breaker for one economy provider. The last {@code windowSize} calls are
+ * kept in a ring buffer; once at least {@code minimumCalls} have been recorded and the failure
+ * rate or slow-call rate reaches its threshold, the breaker opens and rejects calls for
+ * {@code openDurationMs}. After that it lets a few probe calls through (half-open) and closes
+ * again only if all of them succeed quickly.
+ */
+public final class CircuitBreaker {
+  public enum State {
+    CLOSED, OPEN, HALF_OPEN
+  }
+
+  private final String name;
+
+  private final boolean[] failed;
+
+  private final boolean[] slow;
+
+  private final long[] latencies;
+
+  private final int minimumCalls;
+
+  private final double failureRateThreshold;
+
+  private final double slowCallRateThreshold;
+
+  private final long slowCallThresholdNanos;
+
+  private final long openDurationMs;
+
+  private final int halfOpenProbes;
+
+  private State state = State.CLOSED;
+
+  private int next;
+
+  private int recorded;
+
+  private int failures;
+
+  private int slowCalls;
+
+  private long openedAt;
+
+  private int probesStarted;
+
+  private int probesSucceeded;
+
+  private long totalRejected;
+
+  public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+      double slowCallRateThreshold, long slowCallThresholdMs, long openDurationMs, int halfOpenProbes) {
+    this.name = name;
+    this.failed = new boolean[windowSize];
+    this.slow = new boolean[windowSize];
+    this.latencies = new long[windowSize];
+    this.minimumCalls = Math.min(minimumCalls, windowSize);
+    this.failureRateThreshold = failureRateThreshold;
+    this.slowCallRateThreshold = slowCallRateThreshold;
+    this.slowCallThresholdNanos = slowCallThresholdMs * 1_000_000L;
+    this.openDurationMs = openDurationMs;
+    this.halfOpenProbes = Math.max(1, halfOpenProbes);
+  }
+
+  /**
+   * Returns whether a call may go to the provider now. Every permitted call must be followed by
+   * {@link #onSuccess} or {@link #onFailure}.
+   */
+  public synchronized boolean tryAcquire() {
+    if (this.state == State.OPEN) {
+      if (System.currentTimeMillis() - this.openedAt < this.openDurationMs) {
+        this.totalRejected++;
+        return false;
+      }
+      this.state = State.HALF_OPEN;
+      this.probesStarted = 0;
+      this.probesSucceeded = 0;
+    }
+    if (this.state == State.HALF_OPEN) {
+      if (this.probesStarted >= this.halfOpenProbes) {
+        this.totalRejected++;
+        return false;
+      }
+      this.probesStarted++;
+    }
+    return true;
+  }
+
+  public synchronized void onSuccess(long latencyNanos) {
+    boolean isSlow = latencyNanos >= this.slowCallThresholdNanos;
+    if (this.state == State.HALF_OPEN) {
+      if (isSlow) {
+        trip();
+        return;
+      }
+      this.probesSucceeded++;
+      if (this.probesSucceeded >= this.halfOpenProbes)
+        close();
+      return;
+    }
+    record(false, isSlow, latencyNanos);
+  }
+
+  public synchronized void onFailure(long latencyNanos) {
+    if (this.state == State.HALF_OPEN) {
+      trip();
+      return;
+    }
+    record(true, latencyNanos >= this.slowCallThresholdNanos, latencyNanos);
+  }
+
+  private void record(boolean isFailure, boolean isSlow, long latencyNanos) {
+    if (this.state != State.CLOSED)
+      return;
+    if (this.recorded == this.failed.length) {
+      if (this.failed[this.next])
+        this.failures--;
+      if (this.slow[this.next])
+        this.slowCalls--;
+    } else {
+      this.recorded++;
+    }
+    this.failed[this.next] = isFailure;
+    this.slow[this.next] = isSlow;
+    this.latencies[this.next] = latencyNanos;
+    if (isFailure)
+      this.failures++;
+    if (isSlow)
+      this.slowCalls++;
+    this.next = (this.next + 1) % this.failed.length;
+    if (this.recorded >= this.minimumCalls
+        && (failureRate() >= this.failureRateThreshold || slowCallRate() >= this.slowCallRateThreshold))
+      trip();
+  }
+
+  private void trip() {
+    this.state = State.OPEN;
+    this.openedAt = System.currentTimeMillis();
+  }
+
+  private void close() {
+    this.state = State.CLOSED;
+    this.next = 0;
+    this.recorded = 0;
+    this.failures = 0;
+    this.slowCalls = 0;
+  }
+
+  public synchronized void reset() {
+    close();
+    this.totalRejected = 0;
+  }
+
+  public synchronized State getState() {
+    // Report an expired open period as half-open even before the next call arrives
+    if (this.state == State.OPEN && System.currentTimeMillis() - this.openedAt >= this.openDurationMs)
+      return State.HALF_OPEN;
+    return this.state;
+  }
+
+  public String getName() {
+    return this.name;
+  }
+
+  private double failureRate() {
+    return (this.recorded == 0) ? 0.0D : (double)this.failures / this.recorded;
+  }
+
+  private double slowCallRate() {
+    return (this.recorded == 0) ? 0.0D : (double)this.slowCalls / this.recorded;
+  }
+
+  /**
+   * One-line summary for the admin status command.
+   */
+  public synchronized String describe() {
+    long latencySum = 0L;
+    for (int i = 0; i < this.recorded; i++)
+      latencySum += this.latencies[i];
+    long averageMs = (this.recorded == 0) ? 0L : latencySum / this.recorded / 1_000_000L;
+    StringBuilder builder = new StringBuilder()
+        .append(this.name).append(": ").append(getState())
+        .append(" | calls ").append(this.recorded).append('/').append(this.failed.length)
+        .append(" | failures ").append(Math.round(failureRate() * 100.0D)).append('%')
+        .append(" | slow ").append(Math.round(slowCallRate() * 100.0D)).append('%')
+        .append(" | avg ").append(averageMs).append("ms")
+        .append(" | rejected ").append(this.totalRejected);
+    if (this.state == State.OPEN) {
+      long remaining = Math.max(0L, this.openDurationMs - (System.currentTimeMillis() - this.openedAt));
+      builder.append(" | retry in ").append(remaining / 1000L).append('s');
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,177 @@
+package dev.lsdmc;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs economy provider calls off the main thread on a bounded pool. Operations for the same
+ * player run one after another in submission order; different players run in parallel.
+ * Every returned future completes exceptionally with a {@link java.util.concurrent.TimeoutException}
+ * if the call (including time spent queued) exceeds the configured timeout. The timeout only
+ * releases the caller: the player's queue stays blocked until the provider call really returns,
+ * and an operation whose caller timed out before it started is skipped.
+ */
+public final class EconomyTransactionExecutor {
+  private final ExecutorService pool;
+
+  private final long timeoutMs;
+
+  private final Logger logger;
+
+  // Last submitted operation per player, completing when the provider call returns; new operations chain behind it
+  private final Map<UUID, CompletableFuture<?>> tails = new ConcurrentHashMap<>();
+
+  public EconomyTransactionExecutor(int threads, long timeoutMs, Logger logger) {
+    AtomicInteger counter = new AtomicInteger();
+    this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "StorageSlots-Economy-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.timeoutMs = timeoutMs;
+    this.logger = logger;
+  }
+
+  public <T> CompletableFuture<T> submit(UUID playerId, Callable<T> operation) {
+    return submit(playerId, operation, null);
+  }
+
+  /**
+   * Like {@link #submit(UUID, Callable)}, with {@code lateOutcome} receiving the real result of a
+   * call that finishes after its caller already got a timeout. Without a handler the late result
+   * is logged.
+   */
+  public <T> CompletableFuture<T> submit(UUID playerId, Callable<T> operation, BiConsumer<? super T, ? super Throwable> lateOutcome) {
+    return submitAsync(playerId, () -> CompletableFuture.completedFuture(operation.call()), lateOutcome);
+  }
+
+  public <T> CompletableFuture<T> submitAsync(UUID playerId, Callable<? extends CompletionStage<T>> operation) {
+    return submitAsync(playerId, operation, null);
+  }
+
+  /**
+   * Queues an operation that finishes asynchronously, e.g. one that has to wait for the main
+   * thread. The player's queue stays blocked until the returned stage completes, but no worker
+   * thread is held while waiting. {@code lateOutcome} is as for {@link #submit(UUID, Callable, BiConsumer)}.
+   */
+  public <T> CompletableFuture<T> submitAsync(UUID playerId, Callable<? extends CompletionStage<T>> operation, 
+      BiConsumer<? super T, ? super Throwable> lateOutcome) {
+    long submitted = System.nanoTime();
+    // The provider call itself; cancelled if it never started because the caller had already given up
+    CompletableFuture<T> settled = new CompletableFuture<>();
+    CompletableFuture<T> result = new CompletableFuture<>();
+    result.orTimeout(this.timeoutMs, TimeUnit.MILLISECONDS);
+    settled.whenComplete((value, error) -> {
+      boolean delivered = (error != null) ? result.completeExceptionally(error) : result.complete(value);
+      if (!delivered && !settled.isCancelled())
+        handleLate(playerId, submitted, value, error, lateOutcome);
+      // Only now, so awaitIdle() returns after the caller's callbacks (or the late handler) have run
+      this.tails.remove(playerId, settled);
+    });
+    CompletableFuture<?> previous = this.tails.put(playerId, settled);
+    Runnable start = () -> execute(operation, settled, result);
+    if (previous == null || previous.isDone()) {
+      start.run();
+    } else {
+      previous.whenComplete((value, error) -> start.run());
+    }
+    return result;
+  }
+
+  private <T> void handleLate(UUID playerId, long submitted, T value, Throwable error, BiConsumer<? super T, ? super Throwable> lateOutcome) {
+    long elapsedMs = (System.nanoTime() - submitted) / 1000000L;
+    if (lateOutcome == null) {
+      this.logger.warning("Economy call for " + playerId + " finished after " + elapsedMs + "ms, past its " + this.timeoutMs
+          + "ms timeout: " + ((error != null) ? ("failed (" + error + ")") : ("returned " + value)));
+      return;
+    }
+    try {
+      lateOutcome.accept(value, error);
+    } catch (Throwable t) {
+      this.logger.log(Level.SEVERE, "Error handling the late result of an economy call for " + playerId, t);
+    }
+  }
+
+  private <T> void execute(Callable<? extends CompletionStage<T>> operation, CompletableFuture<T> settled, CompletableFuture<T> result) {
+    // A caller that already timed out must not be charged behind its back
+    if (result.isDone()) {
+      settled.cancel(false);
+      return;
+    }
+    try {
+      this.pool.execute(() -> {
+        if (result.isDone()) {
+          settled.cancel(false);
+          return;
+        }
+        try {
+          operation.call().whenComplete((value, error) -> {
+            if (error != null) {
+              settled.completeExceptionally(error);
+            } else {
+              settled.complete(value);
+            }
+          });
+        } catch (Throwable t) {
+          settled.completeExceptionally(t);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      settled.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * The worker pool, for continuations that must leave the main thread again without going
+   * back through a player's queue.
+   */
+  public Executor workers() {
+    return this.pool;
+  }
+
+  public int getQueuedPlayers() {
+    return this.tails.size();
+  }
+
+  /**
+   * Waits until no operation is queued or running, or until {@code timeoutMs} has passed. This
+   * includes provider calls whose caller already timed out. Operations submitted while waiting
+   * are waited for too. Returns the number of players whose
+   * operations were still unsettled.
+   */
+  public int awaitIdle(long timeoutMs) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+    while (!this.tails.isEmpty()) {
+      long remaining = deadline - System.nanoTime();
+      if (remaining <= 0L)
+        break;
+      try {
+        CompletableFuture.allOf(this.tails.values().toArray(new CompletableFuture[0])).get(remaining, TimeUnit.NANOSECONDS);
+      } catch (ExecutionException e) {
+        // Failed operations are settled too; their callers handle the failure
+      } catch (TimeoutException e) {
+        break;
+      }
+    }
+    return this.tails.size();
+  }
+
+  public void shutdown() {
+    this.pool.shutdown();
+  }
+}
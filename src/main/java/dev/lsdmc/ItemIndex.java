@@ -0,0 +1,111 @@
+package dev.lsdmc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Inverted index from item type to the storage slots holding it, kept up to date by
+ * {@link PlayerStorageData} on every item change. Each player's slots for one material are a
+ * 64-bit mask, so a lookup only touches the players that actually hold the material.
+ * Finer filters such as custom model data are applied to those hits by the caller.
+ * Not thread-safe; storage items are only changed on the main thread.
+ */
+public final class ItemIndex {
+  private static final int MAX_SLOTS = Long.SIZE;
+
+  private final Map<Material, Map<UUID, Long>> postings = new EnumMap<>(Material.class);
+
+  /**
+   * Records that {@code slot} changed from {@code previous} to {@code current}; either may be null.
+   */
+  public void update(UUID playerId, int slot, ItemStack previous, ItemStack current) {
+    if (slot < 0 || slot >= MAX_SLOTS)
+      return;
+    Material before = typeOf(previous);
+    Material after = typeOf(current);
+    if (before == after)
+      return;
+    long bit = 1L << slot;
+    if (before != null) {
+      Map<UUID, Long> holders = this.postings.get(before);
+      if (holders != null) {
+        Long mask = holders.get(playerId);
+        if (mask != null) {
+          long remaining = mask.longValue() & ~bit;
+          if (remaining == 0L) {
+            holders.remove(playerId);
+            if (holders.isEmpty())
+              this.postings.remove(before);
+          } else {
+            holders.put(playerId, Long.valueOf(remaining));
+          }
+        }
+      }
+    }
+    if (after != null)
+      this.postings.computeIfAbsent(after, material -> new HashMap<>()).merge(playerId, Long.valueOf(bit), (a, b) -> Long.valueOf(a.longValue() | b.longValue()));
+  }
+
+  /**
+   * Every (player, slot) currently holding {@code material}.
+   */
+  public List<Hit> find(Material material) {
+    Map<UUID, Long> holders = this.postings.get(material);
+    if (holders == null)
+      return Collections.emptyList();
+    List<Hit> hits = new ArrayList<>();
+    for (Map.Entry<UUID, Long> entry : holders.entrySet()) {
+      long mask = entry.getValue().longValue();
+      while (mask != 0L) {
+        int slot = Long.numberOfTrailingZeros(mask);
+        hits.add(new Hit(entry.getKey(), slot));
+        mask &= mask - 1L;
+      }
+    }
+    return hits;
+  }
+
+  /**
+   * Materials held by at least one player, for tab completion.
+   */
+  public Set<Material> getMaterials() {
+    return Collections.unmodifiableSet(this.postings.keySet());
+  }
+
+  public void clear() {
+    this.postings.clear();
+  }
+
+  private static Material typeOf(ItemStack item) {
+    if (item == null || item.getType().isAir())
+      return null;
+    return item.getType();
+  }
+
+  public static final class Hit {
+    private final UUID playerId;
+
+    private final int slot;
+
+    private Hit(UUID playerId, int slot) {
+      this.playerId = playerId;
+      this.slot = slot;
+    }
+
+    public UUID getPlayerId() {
+      return this.playerId;
+    }
+
+    public int getSlot() {
+      return this.slot;
+    }
+  }
+}
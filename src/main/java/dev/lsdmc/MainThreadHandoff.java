@@ -0,0 +1,87 @@
+package dev.lsdmc;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Hands results produced on worker threads (economy providers, LuckPerms storage) back to the
+ * main thread, so callers can touch inventories and player state directly in their continuations.
+ *
+ * <p>The scheduler stops running the plugin's tasks once it is disabled. During shutdown,
+ * {@link #hold()} therefore queues deliveries instead, and the shutdown sequence runs them on the
+ * main thread with {@link #runHeld()} before it saves anything.
+ */
+public final class MainThreadHandoff {
+  private final Plugin plugin;
+
+  private final Queue<Runnable> held = new ConcurrentLinkedQueue<>();
+
+  private volatile boolean holding;
+
+  public MainThreadHandoff(Plugin plugin) {
+    this.plugin = plugin;
+  }
+
+  /**
+   * Returns a future that completes like {@code source}, on the main thread. While deliveries
+   * are held they wait for {@link #runHeld()}; after the plugin has been disabled and released
+   * them, they are delivered inline on whichever thread produced the result.
+   */
+  public <T> CompletableFuture<T> deliver(CompletableFuture<T> source) {
+    CompletableFuture<T> target = new CompletableFuture<>();
+    source.whenComplete((value, error) -> {
+      Runnable delivery = () -> {
+        if (error != null) {
+          target.completeExceptionally(error);
+        } else {
+          target.complete(value);
+        }
+      };
+      if (Bukkit.isPrimaryThread()) {
+        delivery.run();
+      } else if (this.holding) {
+        this.held.add(delivery);
+        // Released while queueing; nothing on the main thread will look at the queue again
+        if (!this.holding)
+          runHeld();
+      } else if (!this.plugin.isEnabled()) {
+        delivery.run();
+      } else {
+        Bukkit.getScheduler().runTask(this.plugin, delivery);
+      }
+    });
+    return target;
+  }
+
+  /**
+   * Queues deliveries from worker threads until {@link #release()}. Called on the main thread
+   * when shutdown starts.
+   */
+  public void hold() {
+    this.holding = true;
+  }
+
+  /**
+   * Runs the deliveries queued so far on the calling thread and returns how many ran.
+   */
+  public int runHeld() {
+    int ran = 0;
+    Runnable delivery;
+    while ((delivery = this.held.poll()) != null) {
+      delivery.run();
+      ran++;
+    }
+    return ran;
+  }
+
+  /**
+   * Stops holding and runs whatever is still queued. Safe to call more than once.
+   */
+  public void release() {
+    this.holding = false;
+    runHeld();
+  }
+}
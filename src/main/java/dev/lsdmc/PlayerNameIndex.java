@@ -0,0 +1,218 @@
+package dev.lsdmc;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+/**
+ * Case-insensitive name to UUID index with last-seen timestamps, persisted in names.yml next to
+ * storage.yml. It is updated as players join and leave, so resolving an offline player's name
+ * never has to scan every stored player or ask the server's user cache.
+ */
+public final class PlayerNameIndex {
+  private final StorageSlots plugin;
+
+  private final File file;
+
+  private final Map<String, Entry> byName = new ConcurrentHashMap<>();
+
+  private final Map<UUID, Entry> byId = new ConcurrentHashMap<>();
+
+  private volatile boolean dirty;
+
+  // Sorted snapshot of names for prefix completion; rebuilt lazily after names change
+  private volatile Completions completions = new Completions(new String[0], new String[0]);
+
+  private volatile boolean completionsStale = true;
+
+  public PlayerNameIndex(StorageSlots plugin, File file) {
+    this.plugin = plugin;
+    this.file = file;
+  }
+
+  /**
+   * Loads names.yml. When it does not exist yet (first start after upgrading), the index is
+   * seeded once from the server's records for {@code knownPlayers} and left dirty, so the next
+   * save writes it.
+   */
+  public void load(Collection<UUID> knownPlayers) {
+    if (!this.file.exists()) {
+      for (UUID playerId : knownPlayers) {
+        OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(playerId);
+        if (offlinePlayer.getName() != null)
+          record(playerId, offlinePlayer.getName(), offlinePlayer.getLastSeen());
+      }
+      this.dirty = true;
+      return;
+    }
+    ConfigurationSection players = YamlConfiguration.loadConfiguration(this.file).getConfigurationSection("players");
+    if (players == null)
+      return;
+    for (String uuidStr : players.getKeys(false)) {
+      try {
+        String name = players.getString(uuidStr + ".name");
+        if (name != null)
+          record(UUID.fromString(uuidStr), name, players.getLong(uuidStr + ".last-seen", 0L));
+      } catch (IllegalArgumentException e) {
+        this.plugin.getLogger().warning("Invalid UUID in names.yml: " + uuidStr);
+      }
+    }
+    this.dirty = false;
+  }
+
+  /**
+   * Records that {@code playerId} was seen under {@code name}. A name held by someone else is
+   * taken over only if this sighting is at least as recent.
+   */
+  public void record(UUID playerId, String name, long lastSeen) {
+    Entry entry = new Entry(playerId, name, lastSeen);
+    Entry previous = this.byId.put(playerId, entry);
+    if (previous != null && !previous.key.equals(entry.key))
+      this.byName.remove(previous.key, previous);
+    if (previous == null || !previous.name.equals(entry.name))
+      this.completionsStale = true;
+    this.byName.merge(entry.key, entry, (current, update) ->
+        (current.playerId.equals(update.playerId) || update.lastSeen >= current.lastSeen) ? update : current);
+    this.dirty = true;
+  }
+
+  public UUID findId(String name) {
+    if (name == null)
+      return null;
+    Entry entry = this.byName.get(name.toLowerCase(Locale.ROOT));
+    return (entry != null) ? entry.playerId : null;
+  }
+
+  public String findName(UUID playerId) {
+    Entry entry = this.byId.get(playerId);
+    return (entry != null) ? entry.name : null;
+  }
+
+  public long getLastSeen(UUID playerId) {
+    Entry entry = this.byId.get(playerId);
+    return (entry != null) ? entry.lastSeen : 0L;
+  }
+
+  /**
+   * Up to {@code limit} indexed names starting with {@code prefix}, ignoring case, in alphabetical
+   * order. A binary search over a sorted snapshot, so the cost follows the number of results.
+   */
+  public List<String> complete(String prefix, int limit) {
+    Completions snapshot = this.completions;
+    if (this.completionsStale) {
+      this.completionsStale = false;
+      snapshot = buildCompletions();
+      this.completions = snapshot;
+    }
+    String key = prefix.toLowerCase(Locale.ROOT);
+    int index = Arrays.binarySearch(snapshot.keys, key);
+    if (index < 0)
+      index = -index - 1;
+    if (index >= snapshot.keys.length || !snapshot.keys[index].startsWith(key))
+      return Collections.emptyList();
+    List<String> names = new ArrayList<>(Math.min(limit, 16));
+    for (; index < snapshot.keys.length && names.size() < limit && snapshot.keys[index].startsWith(key); index++)
+      names.add(snapshot.names[index]);
+    return names;
+  }
+
+  private Completions buildCompletions() {
+    Entry[] entries = this.byName.values().toArray(new Entry[0]);
+    Arrays.sort(entries, (a, b) -> a.key.compareTo(b.key));
+    String[] keys = new String[entries.length];
+    String[] names = new String[entries.length];
+    for (int i = 0; i < entries.length; i++) {
+      keys[i] = entries[i].key;
+      names[i] = entries[i].name;
+    }
+    return new Completions(keys, names);
+  }
+
+  public int size() {
+    return this.byId.size();
+  }
+
+  public File getFile() {
+    return this.file;
+  }
+
+  /**
+   * Copies the index for saving if it changed since the last snapshot, otherwise returns null.
+   * Entries are immutable, so the copy is cheap to take on the main thread and can be turned into
+   * YAML on the thread that writes the file.
+   */
+  public Snapshot snapshotIfDirty() {
+    if (!this.dirty)
+      return null;
+    this.dirty = false;
+    return new Snapshot(this.byId.values().toArray(new Entry[0]));
+  }
+
+  /**
+   * Marks the index as changed again, after writing a snapshot failed.
+   */
+  public void markDirty() {
+    this.dirty = true;
+  }
+
+  public static final class Snapshot {
+    private final Entry[] entries;
+
+    private Snapshot(Entry[] entries) {
+      this.entries = entries;
+    }
+
+    public int size() {
+      return this.entries.length;
+    }
+
+    public String toYaml() {
+      YamlConfiguration yaml = new YamlConfiguration();
+      for (Entry entry : this.entries) {
+        String path = "players." + entry.playerId;
+        yaml.set(path + ".name", entry.name);
+        yaml.set(path + ".last-seen", Long.valueOf(entry.lastSeen));
+      }
+      return yaml.saveToString();
+    }
+  }
+
+  private static final class Completions {
+    private final String[] keys;
+
+    private final String[] names;
+
+    private Completions(String[] keys, String[] names) {
+      this.keys = keys;
+      this.names = names;
+    }
+  }
+
+  private static final class Entry {
+    private final UUID playerId;
+
+    private final String name;
+
+    private final String key;
+
+    private final long lastSeen;
+
+    private Entry(UUID playerId, String name, long lastSeen) {
+      this.playerId = playerId;
+      this.name = name;
+      this.key = name.toLowerCase(Locale.ROOT);
+      this.lastSeen = lastSeen;
+    }
+  }
+}
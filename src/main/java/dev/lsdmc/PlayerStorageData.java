@@ -37,6 +37,14 @@ public class PlayerStorageData implements Serializable, JsonSerializable {
   
   private String lastNotifiedRank;
   
+  // Slots whose item is held for a fee charge in flight; never persisted
+  private transient Map<Integer, WithdrawalReservation> reservations;
+  
+  // Cross-storage item search and running totals; told about every change. Never persisted
+  private transient ItemIndex itemIndex;
+  
+  private transient StorageStats stats;
+  
   public PlayerStorageData(UUID playerId) {
     this.playerId = playerId;
     this.items = new HashMap<>();
@@ -46,6 +54,7 @@ public class PlayerStorageData implements Serializable, JsonSerializable {
     this.hasSeenNewSlotNotification = false;
     this.lastReminderTime = 0L;
     this.lastNotifiedRank = null;
+    this.reservations = new HashMap<>();
   }
   
   public UUID getPlayerId() {
@@ -73,11 +82,13 @@ public class PlayerStorageData implements Serializable, JsonSerializable {
   }
   
   public void unlockSlot(int slot) {
-    this.unlockedSlots.add(Integer.valueOf(slot));
+    if (this.unlockedSlots.add(Integer.valueOf(slot)))
+      slotChange(slot, false, 1); 
   }
   
   public void unlockDonorSlot(int slot) {
-    this.donorSlots.add(Integer.valueOf(slot));
+    if (this.donorSlots.add(Integer.valueOf(slot)))
+      slotChange(slot, true, 1); 
   }
   
   public ItemStack getItem(int slot) {
@@ -86,12 +97,70 @@ public class PlayerStorageData implements Serializable, JsonSerializable {
   
   public void setItem(int slot, ItemStack item) {
     if (item == null) {
-      this.items.remove(Integer.valueOf(slot));
+      indexChange(slot, this.items.remove(Integer.valueOf(slot)), null);
     } else if (hasSlotUnlocked(slot)) {
-      this.items.put(Integer.valueOf(slot), item.clone());
+      ItemStack stored = item.clone();
+      indexChange(slot, this.items.put(Integer.valueOf(slot), stored), stored);
+    } 
+  }
+  
+  /**
+   * Starts reporting this player's slots and items to {@code index} and {@code stats}, adding
+   * everything already stored.
+   */
+  public void attach(ItemIndex index, StorageStats stats) {
+    this.itemIndex = index;
+    this.stats = stats;
+    reportAllSlots(1);
+    for (Map.Entry<Integer, ItemStack> entry : this.items.entrySet())
+      indexChange(entry.getKey().intValue(), null, entry.getValue()); 
+  }
+  
+  /**
+   * Removes this player's slots and items from the index and stats, e.g. when their data is discarded.
+   */
+  public void detach() {
+    for (Map.Entry<Integer, ItemStack> entry : this.items.entrySet())
+      indexChange(entry.getKey().intValue(), entry.getValue(), null); 
+    reportAllSlots(-1);
+    this.itemIndex = null;
+    this.stats = null;
+  }
+  
+  private void indexChange(int slot, ItemStack previous, ItemStack current) {
+    if (this.itemIndex != null)
+      this.itemIndex.update(this.playerId, slot, previous, current); 
+    if (this.stats != null) {
+      this.stats.itemChanged(previous, current);
+      if (isDonorSlot(slot))
+        this.stats.donorSlotUseChanged(((current != null) ? 1 : 0) - ((previous != null) ? 1 : 0)); 
     } 
   }
   
+  private void slotChange(int slot, boolean donor, int delta) {
+    if (this.stats == null)
+      return; 
+    this.stats.slotChanged(slot, donor, delta);
+    if (donor && this.items.containsKey(Integer.valueOf(slot)))
+      this.stats.donorSlotUseChanged(delta); 
+    // Slots change one at a time, so the count only passes through 1 and 0 on these transitions
+    int count = getUnlockedSlotCount();
+    if ((delta > 0 && count == 1) || (delta < 0 && count == 0))
+      this.stats.ownerChanged(delta); 
+  }
+  
+  // Slot counts only; callers report items separately, before removal or after addition
+  private void reportAllSlots(int delta) {
+    if (this.stats == null)
+      return; 
+    for (Integer slot : this.unlockedSlots)
+      this.stats.slotChanged(slot.intValue(), false, delta); 
+    for (Integer slot : this.donorSlots)
+      this.stats.slotChanged(slot.intValue(), true, delta); 
+    if (hasAnyUnlockedSlots())
+      this.stats.ownerChanged(delta); 
+  }
+  
   public int getHighestUnlockedSlot() {
     if (this.unlockedSlots.isEmpty() && this.donorSlots.isEmpty())
       return -1; 
@@ -113,13 +182,17 @@ public class PlayerStorageData implements Serializable, JsonSerializable {
   }
   
   public void lockSlot(int slot) {
-    this.unlockedSlots.remove(Integer.valueOf(slot));
-    this.donorSlots.remove(Integer.valueOf(slot));
-    this.items.remove(Integer.valueOf(slot));
+    // Item first, while the slot still counts as a donor slot
+    indexChange(slot, this.items.remove(Integer.valueOf(slot)), null);
+    if (this.unlockedSlots.remove(Integer.valueOf(slot)))
+      slotChange(slot, false, -1); 
+    if (this.donorSlots.remove(Integer.valueOf(slot)))
+      slotChange(slot, true, -1); 
   }
   
   public void clear() {
-    this.items.clear();
+    dropItems();
+    reportAllSlots(-1);
     this.unlockedSlots.clear();
     this.donorSlots.clear();
     this.currentDonorRank = null;
@@ -152,6 +225,8 @@ public class PlayerStorageData implements Serializable, JsonSerializable {
   }
   
   public void dropItems() {
+    for (Map.Entry<Integer, ItemStack> entry : this.items.entrySet())
+      indexChange(entry.getKey().intValue(), entry.getValue(), null); 
     this.items.clear();
   }
   
@@ -187,6 +262,38 @@ public class PlayerStorageData implements Serializable, JsonSerializable {
     this.lastNotifiedRank = rank;
   }
   
+  /**
+   * Holds the item currently in {@code slot} for a fee-charged withdrawal. Returns null if the
+   * slot is empty or already reserved. The item stays in storage until the reservation is
+   * committed, so a crash or rollback never loses it.
+   */
+  public WithdrawalReservation reserveSlot(int slot, double fee, long now) {
+    ItemStack item = this.items.get(Integer.valueOf(slot));
+    if (item == null || item.getType().isAir() || isSlotReserved(slot))
+      return null; 
+    WithdrawalReservation reservation = new WithdrawalReservation(UUID.randomUUID(), this.playerId, slot, item.clone(), fee, now);
+    reservations().put(Integer.valueOf(slot), reservation);
+    return reservation;
+  }
+  
+  public boolean isSlotReserved(int slot) {
+    return reservations().containsKey(Integer.valueOf(slot));
+  }
+  
+  /**
+   * Ends a reservation. Returns false if it was no longer active, e.g. because the timeout
+   * sweeper already released it.
+   */
+  public boolean releaseReservation(WithdrawalReservation reservation) {
+    return reservations().remove(Integer.valueOf(reservation.getSlot()), reservation);
+  }
+  
+  private Map<Integer, WithdrawalReservation> reservations() {
+    if (this.reservations == null)
+      this.reservations = new HashMap<>(); 
+    return this.reservations;
+  }
+  
   public void resetNotificationStatus() {
     this.hasSeenNewSlotNotification = false;
     this.lastReminderTime = 0L;
@@ -195,15 +302,19 @@ public class PlayerStorageData implements Serializable, JsonSerializable {
   public void migrateSlot(int oldSlot, int newSlot) {
     if (hasSlotUnlocked(oldSlot)) {
       ItemStack item = this.items.remove(Integer.valueOf(oldSlot));
+      indexChange(oldSlot, item, null);
       boolean wasDonorSlot = this.donorSlots.remove(Integer.valueOf(oldSlot));
-      this.unlockedSlots.remove(Integer.valueOf(oldSlot));
-      if (item != null)
-        this.items.put(Integer.valueOf(newSlot), item); 
+      if (wasDonorSlot)
+        slotChange(oldSlot, true, -1); 
+      if (this.unlockedSlots.remove(Integer.valueOf(oldSlot)))
+        slotChange(oldSlot, false, -1); 
       if (wasDonorSlot) {
-        this.donorSlots.add(Integer.valueOf(newSlot));
+        unlockDonorSlot(newSlot);
       } else {
-        this.unlockedSlots.add(Integer.valueOf(newSlot));
+        unlockSlot(newSlot);
       } 
+      if (item != null)
+        indexChange(newSlot, this.items.put(Integer.valueOf(newSlot), item), item); 
     } 
   }
   
@@ -241,9 +352,62 @@ public class PlayerStorageData implements Serializable, JsonSerializable {
   public void deserialize(JsonObject json) {
     if (json.has("donorSlots")) {
       JsonArray donorSlotsArray = json.getAsJsonArray("donorSlots");
-      this.donorSlots.clear();
+      for (Integer slot : new ArrayList<>(this.donorSlots)) {
+        this.donorSlots.remove(slot);
+        slotChange(slot.intValue(), true, -1);
+      } 
       for (JsonElement element : donorSlotsArray)
-        this.donorSlots.add(Integer.valueOf(element.getAsInt())); 
+        unlockDonorSlot(element.getAsInt()); 
     } 
   }
+  
+  public static final class WithdrawalReservation {
+    private final UUID id;
+    
+    private final UUID ownerId;
+    
+    private final int slot;
+    
+    private final ItemStack item;
+    
+    private final double fee;
+    
+    private final long createdAt;
+    
+    private WithdrawalReservation(UUID id, UUID ownerId, int slot, ItemStack item, double fee, long createdAt) {
+      this.id = id;
+      this.ownerId = ownerId;
+      this.slot = slot;
+      this.item = item;
+      this.fee = fee;
+      this.createdAt = createdAt;
+    }
+    
+    /**
+     * Unique per reservation; doubles as the idempotency key of the fee charge and its refund.
+     */
+    public UUID getId() {
+      return this.id;
+    }
+    
+    public UUID getOwnerId() {
+      return this.ownerId;
+    }
+    
+    public int getSlot() {
+      return this.slot;
+    }
+    
+    public double getFee() {
+      return this.fee;
+    }
+    
+    public long getCreatedAt() {
+      return this.createdAt;
+    }
+    
+    public boolean matches(ItemStack current) {
+      return Objects.equals(this.item, current);
+    }
+  }
 }
@@ -7,7 +7,7 @@ import com.sk89q.worldguard.protection.flags.Flag;
 import com.sk89q.worldguard.protection.flags.Flags;
 import com.sk89q.worldguard.protection.flags.StateFlag;
 
-import com.sk89q.worldguard.protection.regions.RegionContainer;
+import com.sk89q.worldguard.protection.regions.ProtectedRegion;
 import com.sk89q.worldguard.protection.regions.RegionQuery;
 import dev.lsdmc.utils.Constants;
 import net.kyori.adventure.text.BuildableComponent;
@@ -15,64 +15,279 @@ import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.TextComponent;
 import net.kyori.adventure.text.format.TextColor;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.event.server.ServerCommandEvent;
+import org.bukkit.plugin.Plugin;
 
-public final class SafezoneManager {
+public final class SafezoneManager implements Listener {
+  // WorldGuard commands that can load, redefine or re-flag regions
+  private static final Set<String> REGION_COMMANDS = Set.of(
+      "rg", "region", "regions", "wg", "worldguard",
+      "worldguard:rg", "worldguard:region", "worldguard:regions", "worldguard:wg", "worldguard:worldguard");
+  
   private final StorageSlots plugin;
   
   private final StorageConfig config;
   
-
+  // Last verdict per player, valid while they stay on the same block
+  private final Map<UUID, CachedVerdict> verdicts = new ConcurrentHashMap<>();
+  
+  // Compiled from the config by compile(); only replaced on the main thread during a reload
+  private boolean enabled;
+  
+  private long cacheTtlMs;
+  
+  private Set<String> regionIds;
+  
+  private Set<String> worldNames;
+  
+  private int pvpPriority;
+  
+  private boolean logChecks;
+  
+  private RegionQuery regionQuery;
+  
+  private Detector detector;
   
   public SafezoneManager(StorageSlots plugin, StorageConfig config) {
     this.plugin = plugin;
     this.config = config;
+    compile();
+  }
+  
+  /**
+   * Recompiles the detection rules from the current config and drops every cached verdict.
+   */
+  public void reload() {
+    compile();
+    invalidateAll();
+  }
+  
+  private void compile() {
+    this.enabled = this.config.isSafezoneEnabled();
+    this.cacheTtlMs = this.config.getSafezoneCacheTtlMs();
+    this.pvpPriority = this.config.getSafezonePvPPriority();
+    this.logChecks = this.config.isSafezoneCheckLoggingEnabled();
+    Set<String> ids = new HashSet<>();
+    for (String id : this.config.getSafezoneRegionNames())
+      ids.add(id.toLowerCase(Locale.ROOT)); 
+    this.regionIds = Set.copyOf(ids);
+    this.worldNames = Set.copyOf(this.config.getSafezoneWorlds());
+    this.regionQuery = null;
+    try {
+      if (this.plugin.getServer().getPluginManager().isPluginEnabled("WorldGuard"))
+        this.regionQuery = WorldGuard.getInstance().getPlatform().getRegionContainer().createQuery(); 
+    } catch (Exception e) {
+      this.plugin.getLogger().warning("Could not set up WorldGuard region queries: " + e.getMessage());
+    } 
+    this.detector = compileDetector(this.config.getSafezoneDetectionMethod());
+  }
+  
+  /**
+   * Builds the detector for a detection method: "region", "world", "pvp", or a combination
+   * joined with "+" (all must pass) or "," (any may pass).
+   */
+  private Detector compileDetector(String method) {
+    boolean requireAll = method.indexOf('+') >= 0;
+    List<Detector> parts = new ArrayList<>();
+    for (String token : method.split(requireAll ? "\\+" : ",")) {
+      String name = token.trim();
+      if (!name.isEmpty())
+        parts.add(compileSingle(name)); 
+    } 
+    if (parts.isEmpty()) {
+      this.plugin.getLogger().warning("No safezone detection method configured. Using region detection.");
+      return compileSingle("region");
+    } 
+    if (parts.size() == 1)
+      return parts.get(0); 
+    Detector[] detectors = parts.toArray(new Detector[0]);
+    if (requireAll)
+      return location -> {
+          for (Detector part : detectors) {
+            if (!part.test(location))
+              return false; 
+          } 
+          return true;
+        }; 
+    return location -> {
+        for (Detector part : detectors) {
+          if (part.test(location))
+            return true; 
+        } 
+        return false;
+      };
+  }
+  
+  private Detector compileSingle(String name) {
+    switch (name) {
+      case "world":
+        return location -> isInSafezoneWorld(location.getWorld());
+      case "pvp":
+        if (this.regionQuery == null) {
+          this.plugin.getLogger().warning("WorldGuard is not enabled! PvP safezone checks will always pass.");
+          return location -> true;
+        } 
+        return this::isInPvPSafezone;
+      case "region":
+        break;
+      default:
+        this.plugin.getLogger().warning("Unknown safezone detection method: " + name + ". Using region detection as fallback.");
+        break;
+    } 
+    if (this.regionQuery == null) {
+      this.plugin.getLogger().warning("WorldGuard is not enabled! Region safezone checks will always pass.");
+      return location -> true;
+    } 
+    return this::isInSafezoneRegion;
   }
   
   public boolean isInSafezone(Player player) {
-    if (!this.config.isSafezoneEnabled())
+    if (player == null)
+      return false; 
+    return isInSafezone(player, player.getLocation());
+  }
+  
+  /**
+   * Checks whether {@code location} counts as a safezone for {@code player}. The verdict is
+   * cached per player and reused until they cross into another block or world, a WorldGuard
+   * region command runs, or the entry is older than {@code safezone.cache-ttl-seconds}.
+   */
+  public boolean isInSafezone(Player player, Location location) {
+    if (!this.enabled)
       return true; 
-    if (player == null || !player.isOnline())
+    if (player == null || !player.isOnline() || location == null)
       return false; 
-    Location location = player.getLocation();
     World world = location.getWorld();
     if (world == null)
       return false; 
-    String detectionMethod = this.config.getSafezoneDetectionMethod();
-    String str1;
-    switch ((str1 = detectionMethod.toLowerCase()).hashCode()) {
-      case -934795532:
-        if (!str1.equals("region"))
-          break; 
-      case 111402:
-        if (!str1.equals("pvp"))
-          break; 
-      case 113318802:
-        if (!str1.equals("world"))
-          break; 
-    } 
-    this.plugin.getLogger().warning("Unknown safezone detection method: " + detectionMethod + ". Using region detection as fallback.");
-    return isInSafezoneRegion(location);
+    int x = location.getBlockX();
+    int y = location.getBlockY();
+    int z = location.getBlockZ();
+    long now = System.currentTimeMillis();
+    CachedVerdict cached = this.verdicts.get(player.getUniqueId());
+    if (cached != null && cached.matches(world, x, y, z) && now - cached.checkedAt < this.cacheTtlMs)
+      return cached.inSafezone; 
+    boolean inSafezone = this.detector.test(location);
+    this.verdicts.put(player.getUniqueId(), new CachedVerdict(world.getUID(), x, y, z, inSafezone, now));
+    return inSafezone;
+  }
+  
+  public void invalidate(UUID playerId) {
+    this.verdicts.remove(playerId);
+  }
+  
+  public void invalidateAll() {
+    this.verdicts.clear();
+  }
+  
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void onPlayerMove(PlayerMoveEvent event) {
+    if (event.hasChangedBlock())
+      invalidate(event.getPlayer().getUniqueId()); 
+  }
+  
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void onPlayerTeleport(PlayerTeleportEvent event) {
+    invalidate(event.getPlayer().getUniqueId());
+  }
+  
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+    invalidate(event.getPlayer().getUniqueId());
+  }
+  
+  @EventHandler(priority = EventPriority.MONITOR)
+  public void onPlayerQuit(PlayerQuitEvent event) {
+    invalidate(event.getPlayer().getUniqueId());
+  }
+  
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
+    onCommand(event.getMessage().startsWith("/") ? event.getMessage().substring(1) : event.getMessage());
+  }
+  
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void onServerCommand(ServerCommandEvent event) {
+    onCommand(event.getCommand().startsWith("/") ? event.getCommand().substring(1) : event.getCommand());
+  }
+  
+  private void onCommand(String commandLine) {
+    int space = commandLine.indexOf(' ');
+    String label = ((space < 0) ? commandLine : commandLine.substring(0, space)).toLowerCase();
+    if (!REGION_COMMANDS.contains(label))
+      return; 
+    invalidateAll();
+    // Region loads and saves finish asynchronously, so drop anything cached in the meantime too
+    if (this.plugin.isEnabled())
+      this.plugin.getServer().getScheduler().runTaskLater((Plugin)this.plugin, this::invalidateAll, 40L); 
+  }
+  
+  @FunctionalInterface
+  private interface Detector {
+    boolean test(Location location);
+  }
+  
+  private static final class CachedVerdict {
+    private final UUID worldId;
+    
+    private final int x;
+    
+    private final int y;
+    
+    private final int z;
+    
+    private final boolean inSafezone;
+    
+    private final long checkedAt;
+    
+    private CachedVerdict(UUID worldId, int x, int y, int z, boolean inSafezone, long checkedAt) {
+      this.worldId = worldId;
+      this.x = x;
+      this.y = y;
+      this.z = z;
+      this.inSafezone = inSafezone;
+      this.checkedAt = checkedAt;
+    }
+    
+    private boolean matches(World world, int x, int y, int z) {
+      return (this.x == x && this.y == y && this.z == z && this.worldId.equals(world.getUID()));
+    }
   }
   
   private boolean isInSafezoneWorld(World world) {
-    return this.config.getSafezoneWorlds().contains(world.getName());
+    return this.worldNames.contains(world.getName());
   }
   
   private boolean isInSafezoneRegion(Location location) {
+    if (this.regionQuery == null)
+      return true; 
     try {
-      if (!this.plugin.getServer().getPluginManager().isPluginEnabled("WorldGuard")) {
-        this.plugin.getLogger().warning("WorldGuard is not enabled! Cannot check region safezones.");
-        return true;
+      ApplicableRegionSet regions = this.regionQuery.getApplicableRegions(BukkitAdapter.adapt(location));
+      // WorldGuard stores region IDs in lower case already
+      for (ProtectedRegion region : regions) {
+        if (this.regionIds.contains(region.getId()))
+          return true; 
       } 
-      RegionContainer container = WorldGuard.getInstance().getPlatform().getRegionContainer();
-      RegionQuery query = container.createQuery();
-      ApplicableRegionSet regions = query.getApplicableRegions(BukkitAdapter.adapt(location));
-      String safezoneRegionName = this.config.getSafezoneRegionName();
-      return regions.getRegions().stream()
-        .anyMatch(region -> region.getId().equalsIgnoreCase(safezoneRegionName));
+      return false;
     } catch (Exception e) {
       this.plugin.getLogger().warning("Error checking region safezone for player at " + 
           formatLocation(location) + ": " + e.getMessage());
@@ -81,27 +296,26 @@ public final class SafezoneManager {
   }
   
   private boolean isInPvPSafezone(Location location) {
+    if (this.regionQuery == null)
+      return true; 
     try {
-      if (!this.plugin.getServer().getPluginManager().isPluginEnabled("WorldGuard")) {
-        this.plugin.getLogger().warning("WorldGuard is not enabled! Cannot check PvP safezones.");
-        return true;
+      com.sk89q.worldedit.util.Location adapted = BukkitAdapter.adapt(location);
+      ApplicableRegionSet regions = this.regionQuery.getApplicableRegions(adapted);
+      int priorityThreshold = this.pvpPriority;
+      boolean hasExplicitPvpDeny = false;
+      for (ProtectedRegion region : regions) {
+        StateFlag.State pvpState = (StateFlag.State)region.getFlag((Flag)Flags.PVP);
+        boolean qualifies = (pvpState == StateFlag.State.DENY && region.getPriority() >= priorityThreshold);
+        if (this.logChecks)
+          this.plugin.getLogger().info(String.format("Region '%s': PVP=%s, Priority=%d, Threshold=%d, Qualifies=%b", new Object[] { region.getId(), pvpState, Integer.valueOf(region.getPriority()), Integer.valueOf(priorityThreshold), Boolean.valueOf(qualifies) })); 
+        if (qualifies) {
+          hasExplicitPvpDeny = true;
+          break;
+        } 
       } 
-      RegionContainer container = WorldGuard.getInstance().getPlatform().getRegionContainer();
-      RegionQuery query = container.createQuery();
-      ApplicableRegionSet regions = query.getApplicableRegions(BukkitAdapter.adapt(location));
-      int priorityThreshold = this.config.getSafezonePvPPriority();
-      boolean hasExplicitPvpDeny = regions.getRegions().stream()
-        .anyMatch(region -> {
-            StateFlag.State pvpState = (StateFlag.State)region.getFlag((Flag)Flags.PVP);
-            boolean isPvpDenied = (pvpState == StateFlag.State.DENY);
-            boolean meetsMinPriority = (region.getPriority() >= priorityThreshold);
-            if (this.config.getMessages().getBoolean("debug.log-safezone-checks", false))
-              this.plugin.getLogger().info(String.format("Region '%s': PVP=%s, Priority=%d, Threshold=%d, Qualifies=%b", new Object[] { region.getId(), pvpState, Integer.valueOf(region.getPriority()), Integer.valueOf(priorityThreshold), Boolean.valueOf((isPvpDenied && meetsMinPriority)) })); 
-            return (isPvpDenied && meetsMinPriority);
-          });
       if (!hasExplicitPvpDeny) {
-        StateFlag.State effectivePvpState = query.queryState(BukkitAdapter.adapt(location), null, new StateFlag[] { Flags.PVP });
-        if (this.config.getMessages().getBoolean("debug.log-safezone-checks", false))
+        StateFlag.State effectivePvpState = this.regionQuery.queryState(adapted, null, new StateFlag[] { Flags.PVP });
+        if (this.logChecks)
           this.plugin.getLogger().info(String.format("No explicit PVP deny regions found. Effective PVP state: %s", new Object[] { effectivePvpState })); 
         return (effectivePvpState == StateFlag.State.DENY);
       } 
@@ -120,7 +334,7 @@ public final class SafezoneManager {
   }
   
   public void sendSafezoneMessage(Player player) {
-    if (this.config.isSafezoneEnabled())
+    if (this.enabled)
       player.sendMessage(this.config.getSafezoneMessage()); 
   }
   
@@ -137,6 +351,8 @@ public final class SafezoneManager {
           .color((TextColor)Constants.Colors.ERROR));
       return;
     } 
+    // Debug output should reflect the live regions, not a cached verdict
+    invalidate(target.getUniqueId());
     Location location = target.getLocation();
     World world = location.getWorld();
     BuildableComponent buildableComponent = ((TextComponent.Builder)((TextComponent.Builder)((TextComponent.Builder)((TextComponent.Builder)((TextComponent.Builder)((TextComponent.Builder)Component.text()
@@ -0,0 +1,151 @@
+package dev.lsdmc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * The single auto-save timer. Once a second it looks at how many players have unsaved changes,
+ * how old the oldest change is and the server's TPS, and starts an incremental save when:
+ * <ul>
+ *   <li>the backlog reaches {@code auto-save.max-dirty-players}, or</li>
+ *   <li>the oldest change is older than {@code auto-save.interval}, stretched to twice that while
+ *       TPS is below {@code auto-save.defer-below-tps}, or</li>
+ *   <li>the server is idle (TPS at or above {@code auto-save.idle-above-tps}) and the oldest
+ *       change is older than {@code auto-save.idle-flush-after}.</li>
+ * </ul>
+ * Only one save runs at a time. Flush latency and backlog are kept for {@code /storageadmin stats}.
+ * Latency runs from the start of a save until storage.yml is written, so it includes the ticks the
+ * save was spread over; the main-thread serialization and the file write are reported separately.
+ */
+public final class SaveScheduler {
+  private final StorageSlots plugin;
+
+  private final StorageDataManager dataManager;
+
+  private final StorageConfig config;
+
+  private BukkitTask task;
+
+  private long flushes;
+
+  private long failedFlushes;
+
+  private long deferredChecks;
+
+  private long lastFlushMs;
+
+  private long maxFlushMs;
+
+  private long totalFlushMs;
+
+  private int lastFlushPlayers;
+
+  private long lastSerializeMs;
+
+  private long maxSerializeMs;
+
+  private long lastWriteMs;
+
+  private long maxWriteMs;
+
+  private String lastReason = "none";
+
+  public SaveScheduler(StorageSlots plugin, StorageDataManager dataManager, StorageConfig config) {
+    this.plugin = plugin;
+    this.dataManager = dataManager;
+    this.config = config;
+  }
+
+  public void start() {
+    if (this.task == null)
+      this.task = this.plugin.getServer().getScheduler().runTaskTimer((Plugin)this.plugin, this::check, 20L, 20L);
+  }
+
+  public void stop() {
+    if (this.task != null) {
+      this.task.cancel();
+      this.task = null;
+    }
+  }
+
+  private void check() {
+    if (!this.config.isAutoSaveEnabled() || !this.dataManager.isSavePending() || this.dataManager.isSaveRunning())
+      return;
+    String reason = flushReason(System.currentTimeMillis());
+    if (reason == null)
+      return;
+    flush(reason);
+  }
+
+  private String flushReason(long now) {
+    long oldest = this.dataManager.getOldestUnsavedChange();
+    long ageMs = (oldest > 0L) ? now - oldest : 0L;
+    if (this.dataManager.getDirtyPlayerCount() >= this.config.getAutoSaveMaxDirtyPlayers())
+      return "backlog";
+    double tps = this.plugin.getServer().getTPS()[0];
+    long intervalMs = this.config.getAutoSaveInterval() * 1000L;
+    if (tps < this.config.getAutoSaveDeferBelowTps()) {
+      if (ageMs >= intervalMs * 2L)
+        return "max-age";
+      if (ageMs >= intervalMs)
+        this.deferredChecks++;
+      return null;
+    }
+    if (ageMs >= intervalMs)
+      return "interval";
+    if (tps >= this.config.getAutoSaveIdleAboveTps() && ageMs >= this.config.getAutoSaveIdleFlushAfter() * 1000L)
+      return "idle";
+    return null;
+  }
+
+  private void flush(String reason) {
+    TickBudgetScheduler scheduler = this.plugin.getWorkScheduler();
+    if (scheduler == null)
+      return;
+    int players = this.dataManager.getDirtyPlayerCount();
+    long started = System.nanoTime();
+    this.lastReason = reason;
+    this.dataManager.saveIncrementally(scheduler).whenComplete((written, error) -> {
+      long elapsedMs = (System.nanoTime() - started) / 1000000L;
+      // Read on the IO thread that just wrote the file, before another write can replace them
+      long serializeMs = this.dataManager.getLastSerializeNanos() / 1000000L;
+      long writeMs = this.dataManager.getLastWriteNanos() / 1000000L;
+      // Completes on the IO thread; hop back so the counters are only touched on the main thread
+      if (!this.plugin.isEnabled())
+        return;
+      this.plugin.getServer().getScheduler().runTask((Plugin)this.plugin, () -> {
+        if (error != null || !written.booleanValue()) {
+          this.failedFlushes++;
+          return;
+        }
+        this.flushes++;
+        this.lastFlushMs = elapsedMs;
+        this.maxFlushMs = Math.max(this.maxFlushMs, elapsedMs);
+        this.totalFlushMs += elapsedMs;
+        this.lastFlushPlayers = players;
+        this.lastSerializeMs = serializeMs;
+        this.maxSerializeMs = Math.max(this.maxSerializeMs, serializeMs);
+        this.lastWriteMs = writeMs;
+        this.maxWriteMs = Math.max(this.maxWriteMs, writeMs);
+      });
+    });
+  }
+
+  /**
+   * Save metrics for {@code /storageadmin stats}, label to value.
+   */
+  public Map<String, String> describe() {
+    Map<String, String> lines = new LinkedHashMap<>();
+    long oldest = this.dataManager.getOldestUnsavedChange();
+    lines.put("Save backlog", this.dataManager.getDirtyPlayerCount() + " players"
+        + ((oldest > 0L) ? (", oldest change " + ((System.currentTimeMillis() - oldest) / 1000L) + "s ago") : ""));
+    lines.put("Saves", this.flushes + " done, " + this.failedFlushes + " failed, " + this.deferredChecks + " deferred checks");
+    lines.put("Save latency", "last " + this.lastFlushMs + "ms (" + this.lastFlushPlayers + " players, " + this.lastReason
+        + "), avg " + ((this.flushes > 0L) ? (this.totalFlushMs / this.flushes) : 0L) + "ms, max " + this.maxFlushMs + "ms");
+    lines.put("Save main thread", "last " + this.lastSerializeMs + "ms, max " + this.maxSerializeMs + "ms");
+    lines.put("Save file write", "last " + this.lastWriteMs + "ms, max " + this.maxWriteMs + "ms");
+    return lines;
+  }
+}
@@ -0,0 +1,115 @@
+package dev.lsdmc;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs from {@code onDisable}, on the main thread, after the plugin has been marked as shutting
+ * down so no new storage operation starts:
+ * <ol>
+ *   <li>waits up to {@code shutdown.economy-drain-ms} for economy calls in flight. The plugin is
+ *       already disabled, so the scheduler no longer runs their callbacks; they are held since
+ *       shutdown started and run here on the main thread once the calls settle, so paid purchases
+ *       and withdrawals are applied before anything is written;</li>
+ *   <li>saves the contents of every open storage GUI and closes it;</li>
+ *   <li>writes storage.yml, names.yml and stats.json in order on the storage IO thread and waits
+ *       for all of them for at most {@code shutdown.flush-timeout-ms};</li>
+ *   <li>logs what was persisted.</li>
+ * </ol>
+ */
+public final class ShutdownSequence {
+  private final StorageSlots plugin;
+
+  private final StorageConfig config;
+
+  public ShutdownSequence(StorageSlots plugin, StorageConfig config) {
+    this.plugin = plugin;
+    this.config = config;
+  }
+
+  public void run() {
+    long started = System.currentTimeMillis();
+    StorageManager storageManager = this.plugin.getStorageManager();
+    if (storageManager == null)
+      return;
+    int economyPending = drainEconomy();
+    List<String> sessions = storageManager.getInventoryManager().saveOpenSessions();
+    flush(storageManager.getDataManager(), economyPending, sessions, started);
+  }
+
+  private int drainEconomy() {
+    MainThreadHandoff mainThread = this.plugin.getMainThread();
+    StorageEconomyManager economyManager = this.plugin.getEconomyManager();
+    try {
+      if (economyManager == null)
+        return 0;
+      int inFlight = economyManager.getQueuedTransactionPlayers();
+      if (inFlight == 0)
+        return 0;
+      this.plugin.getLogger().info("Waiting for economy transactions of " + inFlight + " players to settle...");
+      long deadline = System.currentTimeMillis() + this.config.getShutdownEconomyDrainMs();
+      economyManager.awaitIdle(this.config.getShutdownEconomyDrainMs());
+      // A callback may start another call, e.g. a refund after a failed purchase; wait for those too
+      while (mainThread.runHeld() > 0 && economyManager.getQueuedTransactionPlayers() > 0 && System.currentTimeMillis() < deadline)
+        economyManager.awaitIdle(deadline - System.currentTimeMillis());
+      return economyManager.getQueuedTransactionPlayers();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return economyManager.getQueuedTransactionPlayers();
+    } finally {
+      // Anything settling from here on is delivered on its worker thread
+      mainThread.release();
+    }
+  }
+
+  private void flush(StorageDataManager dataManager, int economyPending, List<String> sessions, long started) {
+    // All three snapshots are taken here on the main thread and written in order on the IO thread
+    CompletableFuture<List<UUID>> storage = dataManager.flushPending();
+    CompletableFuture<Boolean> names = dataManager.saveNames();
+    CompletableFuture<Boolean> stats = dataManager.writeStats(this.plugin.getStorageStats().toJson());
+    try {
+      CompletableFuture.allOf(storage, names, stats).get(this.config.getShutdownFlushTimeoutMs(), TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      this.plugin.getLogger().severe("Error during final save: " + e.getCause());
+    } catch (TimeoutException e) {
+      this.plugin.getLogger().severe("Final save did not finish within " + this.config.getShutdownFlushTimeoutMs() + "ms");
+    }
+    List<UUID> written = storage.isDone() && !storage.isCompletedExceptionally() ? storage.join() : Collections.emptyList();
+    report(dataManager, written, storage.isDone(), names, stats, economyPending, sessions, started);
+  }
+
+  private void report(StorageDataManager dataManager, List<UUID> written, boolean storageDone, CompletableFuture<Boolean> names,
+      CompletableFuture<Boolean> stats, int economyPending, List<String> sessions, long started) {
+    List<String> lines = new ArrayList<>();
+    lines.add("storage.yml: " + (storageDone ? (written.size() + " players written") : "NOT confirmed")
+        + ((dataManager.isSavePending()) ? (", " + dataManager.getDirtyPlayerCount() + " players still unsaved") : ""));
+    lines.add("names.yml: " + describe(names));
+    lines.add("stats.json: " + describe(stats));
+    lines.add("open storage sessions saved: " + sessions.size() + (sessions.isEmpty() ? "" : (" " + sessions)));
+    lines.add("economy: " + ((economyPending == 0) ? "all transactions settled" : (economyPending + " players with unsettled transactions")));
+    this.plugin.getLogger().info("Shutdown save finished in " + (System.currentTimeMillis() - started) + "ms - " + String.join("; ", lines));
+    if (!written.isEmpty() && this.config.isDebugEnabled()) {
+      PlayerNameIndex nameIndex = dataManager.getNameIndex();
+      List<String> players = new ArrayList<>(written.size());
+      for (UUID playerId : written) {
+        String name = nameIndex.findName(playerId);
+        players.add((name != null) ? name : playerId.toString());
+      }
+      this.plugin.getLogger().info("Players written on shutdown: " + String.join(", ", players));
+    }
+  }
+
+  private static String describe(CompletableFuture<?> write) {
+    if (!write.isDone())
+      return "NOT confirmed";
+    return (write.isCompletedExceptionally() || Boolean.FALSE.equals(write.join())) ? "failed" : "ok";
+  }
+}
@@ -3,13 +3,13 @@ package dev.lsdmc;
 import dev.lsdmc.utils.Constants;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
-import java.util.stream.Collectors;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.TextColor;
 import org.bukkit.Bukkit;
+import org.bukkit.Material;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -18,6 +18,8 @@ import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 
 public final class StorageCommandExecutor implements CommandExecutor, TabCompleter {
+  private static final int MAX_NAME_COMPLETIONS = 20;
+  
   private final StorageSlots plugin;
   
   private final StorageManager storageManager;
@@ -26,6 +28,8 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
   
   private final StoragePermissionManager permissionManager;
   
+  private BulkSlotJob bulkJob;
+  
   public StorageCommandExecutor(StorageSlots plugin, StorageManager storageManager, StorageConfig config, StoragePermissionManager permissionManager) {
     this.plugin = plugin;
     this.storageManager = storageManager;
@@ -82,6 +86,8 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
       return handleGiveSlotCommand(player, args);
     } else if (commandName.equals("listslots")) {
       return handleListSlotsCommand(player, args);
+    } else if (commandName.equals("bulkslot")) {
+      return handleBulkSlotCommand(player, args);
     } else if (commandName.equals("togglecooldown")) {
       return handleToggleCooldownCommand(player, args);
     } else if (commandName.equals("testeconomy")) {
@@ -90,6 +96,8 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
       return handleTestFallbackCommand(player);
     } else if (commandName.equals("resetapi")) {
       return handleResetApiCommand(player);
+    } else if (commandName.equals("economystatus")) {
+      return handleEconomyStatusCommand(player, args);
     } else if (commandName.equals("testnotifications")) {
       return handleTestNotificationsCommand(player);
     } else if (commandName.equals("debugsafezone")) {
@@ -183,7 +191,7 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
     
     this.plugin.getLogger().info("Starting configuration reload...");
     try {
-      this.config.reload();
+      this.plugin.reloadConfiguration();
       this.plugin.getLogger().info("Configuration reload completed successfully");
       sender.sendMessage(this.config.getMessage("config-reloaded"));
     } catch (Exception e) {
@@ -211,14 +219,12 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
         this.storageManager.resetAllStorage();
         player.sendMessage(this.config.getMessage("storage-reset"));
       } else {
-        UUID targetId = this.storageManager.findPlayerUUID(args[0]);
-        if (targetId == null) {
-          player.sendMessage(this.config.getMessage("player-not-found"));
-          return true;
-        } 
-        this.storageManager.resetPlayerStorage(targetId);
-        player.sendMessage(this.config.getMessage("player-storage-reset", 
-              Map.of("player", args[0])));
+        String targetName = args[0];
+        this.plugin.getAdminPipeline().withTarget(player, "deleting storage", targetName, (admin, targetId) -> {
+              this.storageManager.resetPlayerStorage(targetId);
+              admin.sendMessage(this.config.getMessage("player-storage-reset", 
+                    Map.of("player", targetName)));
+            });
       } 
     } catch (Exception e) {
       this.plugin.getComponentLogger().error(Component.text("Error deleting storage: " + e.getMessage())
@@ -233,6 +239,10 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
       player.sendMessage(this.config.getMessage("no-permission"));
       return true;
     } 
+    if (args.length >= 2 && args[0].equalsIgnoreCase("find"))
+      return handleFindCommand(player, args); 
+    if (args.length == 1 && args[0].equalsIgnoreCase("stats"))
+      return handleStatsCommand(player); 
     if (args.length != 1) {
       player.sendMessage(this.config.getMessage("usage-storageadmin"));
       return true;
@@ -242,12 +252,8 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
       return true;
     } 
     try {
-      UUID targetId = this.storageManager.findPlayerUUID(args[0]);
-      if (targetId == null) {
-        player.sendMessage(this.config.getMessage("player-not-found"));
-        return true;
-      } 
-      this.storageManager.openPlayerStorage(player, targetId);
+      // Safezone is checked again once the target is resolved, in openPlayerStorage
+      this.plugin.getAdminPipeline().withTarget(player, "opening admin storage", args[0], this.storageManager::openPlayerStorage);
     } catch (Exception e) {
       this.plugin.getComponentLogger().error(Component.text("Error opening admin storage: " + e.getMessage())
           .color((TextColor)Constants.Colors.ERROR));
@@ -256,6 +262,41 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
     return true;
   }
   
+  private boolean handleStatsCommand(Player player) {
+    player.sendMessage(this.config.getMessage("stats-header"));
+    Map<String, String> lines = new LinkedHashMap<>(this.plugin.getStorageStats().summary(5));
+    if (this.plugin.getSaveScheduler() != null)
+      lines.putAll(this.plugin.getSaveScheduler().describe()); 
+    for (Map.Entry<String, String> line : lines.entrySet())
+      player.sendMessage(this.config.getMessage("stats-line", Map.of(
+              "name", line.getKey(), 
+              "value", line.getValue()))); 
+    return true;
+  }
+  
+  private boolean handleFindCommand(Player player, String[] args) {
+    if (args.length > 3) {
+      player.sendMessage(this.config.getMessage("usage-storageadmin"));
+      return true;
+    } 
+    try {
+      // <material> or <material>:<custom model data>
+      String[] query = args[1].split(":", 2);
+      Material material = Material.matchMaterial(query[0]);
+      if (material == null || material.isAir()) {
+        player.sendMessage(this.config.getMessage("invalid-material", Map.of(
+                "material", args[1])));
+        return true;
+      } 
+      Integer modelData = (query.length == 2) ? Integer.valueOf(Integer.parseInt(query[1])) : null;
+      int page = (args.length == 3) ? Integer.parseInt(args[2]) : 1;
+      this.storageManager.findStoredItems(player, material, modelData, page);
+    } catch (NumberFormatException e) {
+      player.sendMessage(this.config.getMessage("invalid-number"));
+    } 
+    return true;
+  }
+  
   private boolean handleViewStorageCommand(Player player, String[] args) {
     if (!this.permissionManager.hasPermission(player, "storageslots.admin")) {
       player.sendMessage(this.config.getMessage("no-permission"));
@@ -270,12 +311,8 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
       return true;
     } 
     try {
-      UUID targetId = this.storageManager.findPlayerUUID(args[0]);
-      if (targetId == null) {
-        player.sendMessage(this.config.getMessage("player-not-found"));
-        return true;
-      } 
-      this.storageManager.openPlayerStorage(player, targetId);
+      // Safezone is checked again once the target is resolved, in openPlayerStorage
+      this.plugin.getAdminPipeline().withTarget(player, "viewing storage", args[0], this.storageManager::openPlayerStorage);
     } catch (Exception e) {
       this.plugin.getComponentLogger().error(Component.text("Error viewing storage: " + e.getMessage())
           .color((TextColor)Constants.Colors.ERROR));
@@ -294,17 +331,14 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
       return true;
     } 
     try {
-      UUID targetId = this.storageManager.findPlayerUUID(args[0]);
-      if (targetId == null) {
-        player.sendMessage(this.config.getMessage("player-not-found"));
-        return true;
-      } 
       int slot = Integer.parseInt(args[1]) - 1;
       if (!this.config.isValidSlot(slot)) {
         player.sendMessage(this.config.getMessage("invalid-slot"));
         return true;
       } 
-      this.storageManager.removeSlot(player, args[0], slot);
+      String targetName = args[0];
+      this.plugin.getAdminPipeline().withTarget(player, "removing slot", targetName, (admin, targetId) -> 
+            this.storageManager.removeSlot(admin, targetId, targetName, slot));
     } catch (NumberFormatException e) {
       player.sendMessage(this.config.getMessage("invalid-number"));
     } catch (Exception e) {
@@ -325,17 +359,14 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
       return true;
     } 
     try {
-      UUID targetId = this.storageManager.findPlayerUUID(args[0]);
-      if (targetId == null) {
-        player.sendMessage(this.config.getMessage("player-not-found"));
-        return true;
-      } 
       int slot = Integer.parseInt(args[1]) - 1;
       if (!this.config.isValidSlot(slot)) {
         player.sendMessage(this.config.getMessage("invalid-slot"));
         return true;
       } 
-      this.storageManager.giveSlot(player, args[0], slot);
+      String targetName = args[0];
+      this.plugin.getAdminPipeline().withTarget(player, "giving slot", targetName, (admin, targetId) -> 
+            this.storageManager.giveSlot(admin, targetId, targetName, slot));
     } catch (NumberFormatException e) {
       player.sendMessage(this.config.getMessage("invalid-number"));
     } catch (Exception e) {
@@ -356,12 +387,9 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
       return true;
     } 
     try {
-      UUID targetId = this.storageManager.findPlayerUUID(args[0]);
-      if (targetId == null) {
-        player.sendMessage(this.config.getMessage("player-not-found"));
-        return true;
-      } 
-      this.storageManager.listSlots(player, args[0]);
+      String targetName = args[0];
+      this.plugin.getAdminPipeline().withTarget(player, "listing slots", targetName, (admin, targetId) -> 
+            this.storageManager.listSlots(admin, targetId, targetName));
     } catch (Exception e) {
       this.plugin.getComponentLogger().error(Component.text("Error listing slots: " + e.getMessage())
           .color((TextColor)Constants.Colors.ERROR));
@@ -370,6 +398,41 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
     return true;
   }
   
+  private boolean handleBulkSlotCommand(Player player, String[] args) {
+    if (!this.permissionManager.hasPermission(player, "storageslots.admin")) {
+      player.sendMessage(this.config.getMessage("no-permission"));
+      return true;
+    } 
+    BulkSlotJob.Action action = (args.length == 3) ? BulkSlotJob.Action.fromString(args[0]) : null;
+    if (action == null || !BulkSlotJob.isValidSource(args[2])) {
+      player.sendMessage(this.config.getMessage("usage-bulkslot"));
+      return true;
+    } 
+    if (this.bulkJob != null && this.bulkJob.isRunning()) {
+      player.sendMessage(this.config.getMessage("bulk-already-running"));
+      return true;
+    } 
+    try {
+      int slot = Integer.parseInt(args[1]) - 1;
+      if (!this.config.isValidSlot(slot)) {
+        player.sendMessage(this.config.getMessage("invalid-slot"));
+        return true;
+      } 
+      String source = args[2];
+      this.plugin.getAdminPipeline().run(player, "resolving bulk targets", () -> BulkSlotJob.resolve(this.plugin, source), (admin, targets) -> {
+            // Another job may have started while the targets were being resolved
+            if (this.bulkJob != null && this.bulkJob.isRunning()) {
+              admin.sendMessage(this.config.getMessage("bulk-already-running"));
+              return;
+            } 
+            this.bulkJob = BulkSlotJob.start(this.plugin, admin, action, slot, source, targets);
+          });
+    } catch (NumberFormatException e) {
+      player.sendMessage(this.config.getMessage("invalid-number"));
+    } 
+    return true;
+  }
+  
   private boolean handleToggleCooldownCommand(Player player, String[] args) {
     if (!this.permissionManager.hasPermission(player, "storageslots.admin")) {
       player.sendMessage(this.config.getMessage("no-permission"));
@@ -510,7 +573,7 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
     } 
     try {
       this.plugin.getEconomyManager().resetApiStatus();
-      player.sendMessage(Component.text("PlayerPoints API status has been reset to working.")
+      player.sendMessage(Component.text("Economy circuit breakers have been reset to closed.")
           .color((TextColor)Constants.Colors.SUCCESS));
       player.sendMessage(Component.text("The system will now try the API first before using command fallback.")
           .color((TextColor)Constants.Colors.INFO));
@@ -523,6 +586,30 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
     return true;
   }
   
+  private boolean handleEconomyStatusCommand(Player player, String[] args) {
+    if (!this.permissionManager.hasPermission(player, "storageslots.admin")) {
+      player.sendMessage(this.config.getMessage("no-permission"));
+      return true;
+    } 
+    StorageEconomyManager economy = this.plugin.getEconomyManager();
+    if (args.length == 1 && args[0].equalsIgnoreCase("reset")) {
+      economy.resetApiStatus();
+      player.sendMessage(Component.text("Economy circuit breakers have been reset to closed.")
+          .color((TextColor)Constants.Colors.SUCCESS));
+      return true;
+    } 
+    player.sendMessage(Component.text("=== Economy Provider Status ===")
+        .color((TextColor)Constants.Colors.HEADER));
+    for (CircuitBreaker breaker : economy.getCircuitBreakers()) {
+      TextColor color = (breaker.getState() == CircuitBreaker.State.CLOSED) ? (TextColor)Constants.Colors.SUCCESS : 
+        ((breaker.getState() == CircuitBreaker.State.OPEN) ? (TextColor)Constants.Colors.ERROR : (TextColor)Constants.Colors.HIGHLIGHT);
+      player.sendMessage(Component.text(breaker.describe()).color(color));
+    } 
+    player.sendMessage(Component.text("Players with queued transactions: " + economy.getQueuedTransactionPlayers())
+        .color((TextColor)Constants.Colors.INFO));
+    return true;
+  }
+  
   private boolean handleTestNotificationsCommand(Player player) {
     if (!this.permissionManager.hasPermission(player, "storageslots.admin")) {
       player.sendMessage(this.config.getMessage("no-permission"));
@@ -611,11 +698,46 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
           return getPlayerNames(args[0]);
         }
         break;
+      case "bulkslot":
+        if (args.length == 1) {
+          for (BulkSlotJob.Action action : BulkSlotJob.Action.values()) {
+            if (action.getLabel().startsWith(args[0].toLowerCase()))
+              completions.add(action.getLabel()); 
+          } 
+        } else if (args.length == 2) {
+          return getSlotNumbers(args[1]);
+        } else if (args.length == 3) {
+          for (String kind : new String[] { "group:", "perm:", "file:" }) {
+            if (kind.startsWith(args[2].toLowerCase()))
+              completions.add(kind); 
+          } 
+        }
+        break;
+      case "storageadmin":
+        if (args.length == 1) {
+          completions.addAll(getPlayerNames(args[0]));
+          for (String subcommand : new String[] { "find", "stats" }) {
+            if (subcommand.startsWith(args[0].toLowerCase()))
+              completions.add(subcommand); 
+          } 
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("find")) {
+          String prefix = args[1].toLowerCase();
+          for (Material material : this.storageManager.getDataManager().getItemIndex().getMaterials()) {
+            String name = material.name().toLowerCase();
+            if (name.startsWith(prefix))
+              completions.add(name); 
+          } 
+        }
+        break;
+      case "economystatus":
+        if (args.length == 1 && "reset".startsWith(args[0].toLowerCase())) {
+          completions.add("reset");
+        }
+        break;
       case "storage":
       case "buystorage":
       case "storagecost":
       case "storagereload":
-      case "storageadmin":
       case "togglecooldown":
       case "testeconomy":
       case "testfallback":
@@ -630,12 +752,8 @@ public final class StorageCommandExecutor implements CommandExecutor, TabComplet
 
   private List<String> getPlayerNames(String prefix) {
     try {
-      return (List<String>)Bukkit.getOnlinePlayers().stream()
-        .map(Player::getName)
-        .filter(name -> name.toLowerCase().startsWith(prefix.toLowerCase()))
-        .sorted()
-        .limit(10L)
-        .collect(Collectors.toList());
+      // Known storage owners, online or not, from the name index kept up to date on join
+      return this.storageManager.getDataManager().getNameIndex().complete(prefix, MAX_NAME_COMPLETIONS);
     } catch (Exception e) {
       this.plugin.getComponentLogger().error(Component.text("Error getting player names: " + e.getMessage())
           .color((TextColor)Constants.Colors.ERROR));
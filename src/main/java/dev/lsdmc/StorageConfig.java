@@ -2,14 +2,18 @@ package dev.lsdmc;
 
 import dev.lsdmc.utils.Constants;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.TextColor;
 import net.kyori.adventure.text.minimessage.MiniMessage;
@@ -23,11 +27,14 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
 public final class StorageConfig {
+  private static final WithdrawalFee NO_WITHDRAWAL_FEE = new WithdrawalFee(0, 0.0D);
+  
   private final StorageSlots plugin;
   
-  private final FileConfiguration config;
+  // Swapped wholesale on reload so a half-parsed file never becomes visible
+  private FileConfiguration config;
   
-  private final FileConfiguration messages;
+  private FileConfiguration messages;
   
   private final MiniMessage miniMessage;
   
@@ -58,6 +65,17 @@ public final class StorageConfig {
   // Maintains the evaluation order for rank groups as defined in config.yml
   private List<String> rankGroupOrder;
   
+  // Rank permissions belonging to each withdrawal fee group, compiled once per load
+  private Map<String, List<String>> rankGroupMembers;
+  
+  private boolean withdrawalFeesEnabled;
+  
+  // Resolved withdrawal fee per player; invalidated on reload, quit and LuckPerms recalculation
+  private final Map<UUID, WithdrawalFee> withdrawalFeeCache;
+  
+  // Highest donor rank per online player; populated on join and refreshed from LuckPerms events
+  private final Map<UUID, Optional<DonorRank>> donorRankCache;
+  
   public StorageConfig(StorageSlots plugin) {
     this.plugin = plugin;
     this.config = plugin.getConfig();
@@ -74,6 +92,9 @@ public final class StorageConfig {
     this.donorRankFees = new HashMap<>();
     this.defaultWithdrawalFee = new WithdrawalFee(10, 100.0D);
     this.rankGroupOrder = new ArrayList<>();
+    this.rankGroupMembers = new HashMap<>();
+    this.withdrawalFeeCache = new ConcurrentHashMap<>();
+    this.donorRankCache = new ConcurrentHashMap<>();
     this.messages = loadMessagesConfig();
     loadConfiguration();
   }
@@ -88,6 +109,7 @@ public final class StorageConfig {
   public void reload() {
     this.plugin.getLogger().info("StorageConfig.reload() called");
     
+    // JavaPlugin#reloadConfig replaces the config object, so the new one has to be picked up explicitly
     this.plugin.reloadConfig();
     this.plugin.getLogger().info("Main config reloaded");
     
@@ -95,9 +117,12 @@ public final class StorageConfig {
     this.plugin.getLogger().info("Messages file path: " + messagesFile.getAbsolutePath());
     this.plugin.getLogger().info("Messages file exists: " + messagesFile.exists());
     
+    FileConfiguration reloadedMessages = this.messages;
     if (messagesFile.exists())
       try {
-        ((YamlConfiguration)this.messages).load(messagesFile);
+        YamlConfiguration loaded = new YamlConfiguration();
+        loaded.load(messagesFile);
+        reloadedMessages = loaded;
         this.plugin.getLogger().info("Messages.yml reloaded successfully");
       } catch (Exception e) {
         this.plugin.getLogger().severe("Failed to reload messages.yml: " + e.getMessage());
@@ -106,7 +131,21 @@ public final class StorageConfig {
             .color((TextColor)Constants.Colors.ERROR));
       }  
     
-    this.plugin.getLogger().info("Clearing all caches...");
+    applySnapshot(this.plugin.getConfig(), reloadedMessages);
+    
+    this.plugin.getLogger().info("Reload completed. Cached messages count: " + this.cachedMessages.size());
+    this.plugin.getComponentLogger().info(Component.text("Configuration and messages reloaded!")
+        .color((TextColor)Constants.Colors.SUCCESS));
+  }
+  
+  /**
+   * Replaces the active config and messages with already parsed files and rebuilds every
+   * derived lookup table. Must be called on the main thread.
+   */
+  public void applySnapshot(FileConfiguration newConfig, FileConfiguration newMessages) {
+    this.config = newConfig;
+    this.messages = newMessages;
+    
     // Clear all caches
     this.cachedMessages.clear();
     this.slotCosts.clear();
@@ -118,13 +157,22 @@ public final class StorageConfig {
     this.individualRankFees.clear();
     this.donorRankFees.clear();
     this.rankGroupOrder.clear();
+    this.rankGroupMembers.clear();
     
-    this.plugin.getLogger().info("Loading configuration...");
-    loadConfiguration(); // <-- Ensure all config values are reloaded
-    
-    this.plugin.getLogger().info("Reload completed. Cached messages count: " + this.cachedMessages.size());
-    this.plugin.getComponentLogger().info(Component.text("Configuration and messages reloaded!")
-        .color((TextColor)Constants.Colors.SUCCESS));
+    loadConfiguration();
+  }
+  
+  /**
+   * Writes the active config back to config.yml. The plugin's own config object may be a
+   * different instance after a file-watcher reload, so it is not used here.
+   */
+  private void saveConfigFile() {
+    try {
+      this.config.save(new File(this.plugin.getDataFolder(), "config.yml"));
+    } catch (IOException e) {
+      this.plugin.getComponentLogger().error(Component.text("Failed to save config.yml: " + e.getMessage())
+          .color((TextColor)Constants.Colors.ERROR));
+    } 
   }
   
   public void loadConfiguration() {
@@ -195,7 +243,7 @@ public final class StorageConfig {
     }
     
     if (hasChanges)
-      this.plugin.saveConfig(); 
+      saveConfigFile(); 
   }
   
   private void loadSlotCosts() {
@@ -248,6 +296,7 @@ public final class StorageConfig {
   }
   
   private void loadDonorRanks() {
+    this.donorRankCache.clear();
     ConfigurationSection donorSection = this.config.getConfigurationSection("donor.ranks");
     if (donorSection != null)
       for (String rankName : donorSection.getKeys(false)) {
@@ -267,6 +316,9 @@ public final class StorageConfig {
     this.rankGroupFees.clear();
     this.individualRankFees.clear();
     this.donorRankFees.clear();
+    this.rankGroupMembers.clear();
+    this.withdrawalFeeCache.clear();
+    this.withdrawalFeesEnabled = this.config.getBoolean("withdrawal-fees.enabled", true);
     ConfigurationSection defaultSection = this.config.getConfigurationSection("withdrawal-fees.default");
     if (defaultSection != null) {
       int points = defaultSection.getInt("points", 10);
@@ -283,6 +335,7 @@ public final class StorageConfig {
           int points = groupSection.getInt("points", 0);
           double money = groupSection.getDouble("money", 0.0D);
           this.rankGroupFees.put(groupName, new WithdrawalFee(points, money));
+          this.rankGroupMembers.put(groupName, List.copyOf(groupSection.getStringList("ranks")));
         }
       }
     }
@@ -440,7 +493,7 @@ public final class StorageConfig {
       throw new IllegalArgumentException("Cost cannot be negative"); 
     this.slotCosts.put(Integer.valueOf(slot), Double.valueOf(cost));
     this.config.set("storage.costs.slot-" + (slot + 1), Double.valueOf(cost));
-    this.plugin.saveConfig();
+    saveConfigFile();
   }
   
   public List<String> getProhibitedItems() {
@@ -482,6 +535,14 @@ public final class StorageConfig {
     return player.hasPermission(requiredRank);
   }
   
+  public long getUserCacheTtlMs() {
+    return Math.max(0L, this.config.getLong("permissions.user-cache.ttl-seconds", 60L)) * 1000L;
+  }
+  
+  public int getUserCacheMaxEntries() {
+    return Math.max(1, this.config.getInt("permissions.user-cache.max-entries", 1000));
+  }
+  
   public boolean isSafezoneEnabled() {
     return this.config.getBoolean("safezone.enabled", true);
   }
@@ -499,10 +560,27 @@ public final class StorageConfig {
     return this.config.getInt("safezone.pvp-priority", 0);
   }
   
+  /**
+   * Region IDs that count as safezones. {@code safezone.region-name} may be a single name or a list.
+   */
+  public List<String> getSafezoneRegionNames() {
+    if (this.config.isList("safezone.region-name"))
+      return this.config.getStringList("safezone.region-name"); 
+    return Collections.singletonList(getSafezoneRegionName());
+  }
+  
+  public boolean isSafezoneCheckLoggingEnabled() {
+    return this.config.getBoolean("debug.log-safezone-checks", false);
+  }
+  
   public List<String> getSafezoneWorlds() {
     return this.config.getStringList("safezone.worlds");
   }
   
+  public long getSafezoneCacheTtlMs() {
+    return Math.max(0L, this.config.getLong("safezone.cache-ttl-seconds", 30L)) * 1000L;
+  }
+  
   public Component getSafezoneMessage() {
     return getMessage("safezone-required");
   }
@@ -543,9 +621,25 @@ public final class StorageConfig {
     if (player == null || this.donorRanks.isEmpty())
       return this.donorRanks.values().stream()
         .max(Comparator.comparingInt(DonorRank::slots)); 
-    return this.donorRanks.values().stream()
+    Optional<DonorRank> cached = this.donorRankCache.get(player.getUniqueId());
+    if (cached != null)
+      return cached; 
+    return refreshHighestDonorRank(player);
+  }
+  
+  public Optional<DonorRank> refreshHighestDonorRank(Player player) {
+    Optional<DonorRank> resolved = this.donorRanks.values().stream()
       .filter(rank -> player.hasPermission(rank.permission()))
       .max(Comparator.comparingInt(DonorRank::slots));
+    this.donorRankCache.put(player.getUniqueId(), resolved);
+    return resolved;
+  }
+  
+  public void invalidatePlayerCache(UUID playerId) {
+    if (playerId == null)
+      return; 
+    this.donorRankCache.remove(playerId);
+    this.withdrawalFeeCache.remove(playerId);
   }
   
   public int getMaxSlotsPerPlayer() {
@@ -564,10 +658,61 @@ public final class StorageConfig {
     return this.config.getBoolean("auto-save.enabled", true);
   }
   
+  public long getTickBudgetMicros() {
+    return Math.max(50L, this.config.getLong("performance.tick-budget-us", 1000L));
+  }
+  
+  /**
+   * Seconds between writes of stats.json; 0 disables the export.
+   */
+  public long getStatsExportInterval() {
+    return Math.max(0L, this.config.getLong("statistics.export-interval", 300L));
+  }
+  
+  public long getShutdownEconomyDrainMs() {
+    return Math.max(0L, this.config.getLong("shutdown.economy-drain-ms", 5000L));
+  }
+  
+  public long getShutdownFlushTimeoutMs() {
+    return Math.max(1000L, this.config.getLong("shutdown.flush-timeout-ms", 10000L));
+  }
+  
+  public int getBulkChunkSize() {
+    return Math.max(1, this.config.getInt("performance.bulk-chunk-size", 200));
+  }
+  
+  public int getAutoSaveMaxDirtyPlayers() {
+    return Math.max(1, this.config.getInt("auto-save.max-dirty-players", 200));
+  }
+  
+  public int getAutoSaveIdleFlushAfter() {
+    return Math.max(5, this.config.getInt("auto-save.idle-flush-after", 30));
+  }
+  
+  public double getAutoSaveDeferBelowTps() {
+    return this.config.getDouble("auto-save.defer-below-tps", 18.0D);
+  }
+  
+  public double getAutoSaveIdleAboveTps() {
+    return this.config.getDouble("auto-save.idle-above-tps", 19.5D);
+  }
+  
   public int getAutoSaveInterval() {
     return Math.max(60, this.config.getInt("auto-save.interval", 300));
   }
   
+  public boolean isHotReloadEnabled() {
+    return this.config.getBoolean("hot-reload.enabled", true);
+  }
+  
+  public long getHotReloadDebounceMs() {
+    return Math.max(100L, this.config.getLong("hot-reload.debounce-ms", 500L));
+  }
+  
+  public boolean isDebugEnabled() {
+    return this.config.getBoolean("debug.enabled", false);
+  }
+  
   public String getCurrencyName() {
     // Legacy support - check old config format first
     if (this.config.contains("economy.currency-name")) {
@@ -611,15 +756,75 @@ public final class StorageConfig {
     return this.config.getBoolean("economy.donor-slots.use-vault", false);
   }
   
+  public int getEconomyThreads() {
+    return Math.max(1, this.config.getInt("economy.executor.threads", 4));
+  }
+  
+  public long getEconomyTimeoutMs() {
+    return Math.max(500L, this.config.getLong("economy.executor.timeout-ms", 5000L));
+  }
+  
+  public long getBalanceCacheTtlMs() {
+    return Math.max(0L, this.config.getLong("economy.balance-cache-ttl-ms", 3000L));
+  }
+  
+  public int getBreakerWindowSize() {
+    return Math.max(1, this.config.getInt("economy.circuit-breaker.window-size", 20));
+  }
+  
+  public int getBreakerMinimumCalls() {
+    return Math.max(1, this.config.getInt("economy.circuit-breaker.minimum-calls", 5));
+  }
+  
+  public double getBreakerFailureRateThreshold() {
+    return Math.min(100.0D, Math.max(1.0D, this.config.getDouble("economy.circuit-breaker.failure-rate-percent", 50.0D))) / 100.0D;
+  }
+  
+  public double getBreakerSlowCallRateThreshold() {
+    return Math.min(100.0D, Math.max(1.0D, this.config.getDouble("economy.circuit-breaker.slow-call-rate-percent", 80.0D))) / 100.0D;
+  }
+  
+  public long getBreakerSlowCallThresholdMs() {
+    return Math.max(1L, this.config.getLong("economy.circuit-breaker.slow-call-ms", 2000L));
+  }
+  
+  public long getBreakerOpenDurationMs() {
+    return Math.max(1L, this.config.getLong("economy.circuit-breaker.open-seconds", 30L)) * 1000L;
+  }
+  
+  public int getBreakerHalfOpenProbes() {
+    return Math.max(1, this.config.getInt("economy.circuit-breaker.half-open-probes", 2));
+  }
+  
   public boolean isWithdrawalFeesEnabled() {
-    return this.config.getBoolean("withdrawal-fees.enabled", true);
+    return this.withdrawalFeesEnabled;
+  }
+  
+  public long getReservationTimeoutMs() {
+    // Never shorter than the economy timeout, so a charge settles before its reservation expires
+    long timeoutMs = Math.max(5L, this.config.getLong("withdrawal-fees.reservation-timeout-seconds", 30L)) * 1000L;
+    return Math.max(timeoutMs, getEconomyTimeoutMs() + 1000L);
   }
   
   public WithdrawalFee getWithdrawalFee(Player player) {
-    if (!isWithdrawalFeesEnabled())
-      return new WithdrawalFee(0, 0.0D); 
+    if (!this.withdrawalFeesEnabled)
+      return NO_WITHDRAWAL_FEE; 
     if (player == null)
       return this.defaultWithdrawalFee; 
+    WithdrawalFee cached = this.withdrawalFeeCache.get(player.getUniqueId());
+    if (cached != null)
+      return cached; 
+    WithdrawalFee resolved = resolveWithdrawalFee(player);
+    this.withdrawalFeeCache.put(player.getUniqueId(), resolved);
+    return resolved;
+  }
+  
+  public void invalidateWithdrawalFee(UUID playerId) {
+    if (playerId != null)
+      this.withdrawalFeeCache.remove(playerId); 
+  }
+  
+  private WithdrawalFee resolveWithdrawalFee(Player player) {
     Optional<DonorRank> highestDonorRank = getHighestDonorRank(player);
     if (highestDonorRank.isPresent()) {
       String donorRankName = ((DonorRank)highestDonorRank.get()).name();
@@ -643,9 +848,8 @@ public final class StorageConfig {
     // Evaluate rank groups in configured order (YAML order). Fallback to map order if not available
     List<String> groupsToCheck = this.rankGroupOrder.isEmpty() ? new ArrayList<>(this.rankGroupFees.keySet()) : this.rankGroupOrder;
     for (String groupName : groupsToCheck) {
-      ConfigurationSection groupSection = this.config.getConfigurationSection("withdrawal-fees.rank-groups." + groupName);
-      if (groupSection != null) {
-        List<String> ranks = groupSection.getStringList("ranks");
+      List<String> ranks = this.rankGroupMembers.get(groupName);
+      if (ranks != null) {
         for (String rank : ranks) {
           if (player.hasPermission(rank)) {
             WithdrawalFee groupFee = this.rankGroupFees.get(groupName);
@@ -850,6 +1054,10 @@ public final class StorageConfig {
     return this.messages;
   }
   
+  public FileConfiguration getConfig() {
+    return this.config;
+  }
+  
   public static final class DonorRank {
     private final String name;
     
@@ -910,6 +1118,10 @@ public final class StorageConfig {
     return this.config.getLong("withdrawal-cooldown.duration-ms", 1500L);
   }
   
+  public boolean applyWithdrawalCooldownToOps() {
+    return this.config.getBoolean("withdrawal-cooldown.apply-to-ops", true);
+  }
+  
   public boolean canBypassWithdrawalCooldown(Player player) {
     return player.hasPermission("storageslots.bypass.cooldown");
   }
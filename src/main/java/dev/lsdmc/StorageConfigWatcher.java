@@ -0,0 +1,161 @@
+package dev.lsdmc;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.Bukkit;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+/**
+ * Watches config.yml and messages.yml in the plugin folder. Changed files are parsed and
+ * validated on the watcher thread; only a valid pair is handed to the main thread, where
+ * {@link StorageSlots#applyConfigurationSnapshot} swaps it in.
+ */
+public final class StorageConfigWatcher implements Runnable {
+  private static final String CONFIG_FILE = "config.yml";
+
+  private static final String MESSAGES_FILE = "messages.yml";
+
+  private final StorageSlots plugin;
+
+  private final Path dataFolder;
+
+  private final long debounceMs;
+
+  private WatchService watchService;
+
+  private Thread thread;
+
+  private volatile boolean running;
+
+  public StorageConfigWatcher(StorageSlots plugin, long debounceMs) {
+    this.plugin = plugin;
+    this.dataFolder = plugin.getDataFolder().toPath();
+    this.debounceMs = debounceMs;
+  }
+
+  public void start() {
+    if (this.running)
+      return;
+    try {
+      this.watchService = FileSystems.getDefault().newWatchService();
+      this.dataFolder.register(this.watchService, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+    } catch (IOException e) {
+      this.plugin.getLogger().warning("Config hot reload disabled - could not watch plugin folder: " + e.getMessage());
+      return;
+    }
+    this.running = true;
+    this.thread = new Thread(this, "StorageSlots-ConfigWatcher");
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  public void stop() {
+    this.running = false;
+    if (this.watchService != null)
+      try {
+        this.watchService.close();
+      } catch (IOException ignored) {}
+    if (this.thread != null)
+      this.thread.interrupt();
+  }
+
+  @Override
+  public void run() {
+    while (this.running) {
+      try {
+        WatchKey key = this.watchService.take();
+        boolean relevant = drain(key);
+        // Editors and SFTP clients often write a file in several steps; wait until it settles
+        while (relevant) {
+          WatchKey next = this.watchService.poll(this.debounceMs, TimeUnit.MILLISECONDS);
+          if (next == null)
+            break;
+          drain(next);
+        }
+        if (relevant)
+          reloadFromDisk();
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        return;
+      } catch (Exception e) {
+        this.plugin.getLogger().warning("Config watcher error: " + e.getMessage());
+      }
+    }
+  }
+
+  private boolean drain(WatchKey key) {
+    boolean relevant = false;
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        relevant = true;
+        continue;
+      }
+      String name = String.valueOf(event.context());
+      if (CONFIG_FILE.equals(name) || MESSAGES_FILE.equals(name))
+        relevant = true;
+    }
+    key.reset();
+    return relevant;
+  }
+
+  private void reloadFromDisk() {
+    YamlConfiguration newConfig = parse(CONFIG_FILE);
+    YamlConfiguration newMessages = parse(MESSAGES_FILE);
+    if (newConfig == null || newMessages == null)
+      return;
+    String problem = validate(newConfig, newMessages);
+    if (problem != null) {
+      this.plugin.getLogger().warning("Ignoring config change - " + problem + ". Keeping the previous configuration.");
+      return;
+    }
+    String configText = newConfig.saveToString();
+    String messagesText = newMessages.saveToString();
+    if (!this.running || !this.plugin.isEnabled())
+      return;
+    Bukkit.getScheduler().runTask(this.plugin, () -> this.plugin.applyConfigurationSnapshot(newConfig, newMessages, configText, messagesText));
+  }
+
+  private YamlConfiguration parse(String fileName) {
+    File file = this.dataFolder.resolve(fileName).toFile();
+    if (!file.exists()) {
+      this.plugin.getLogger().warning("Ignoring config change - " + fileName + " is missing");
+      return null;
+    }
+    YamlConfiguration yaml = new YamlConfiguration();
+    try {
+      yaml.load(file);
+      return yaml;
+    } catch (IOException | InvalidConfigurationException e) {
+      this.plugin.getLogger().warning("Ignoring config change - " + fileName + " could not be parsed: " + e.getMessage());
+      return null;
+    }
+  }
+
+  private String validate(YamlConfiguration config, YamlConfiguration messages) {
+    if (config.getKeys(false).isEmpty())
+      return "config.yml is empty";
+    if (messages.getKeys(false).isEmpty())
+      return "messages.yml is empty";
+    int slots = config.getInt("storage.slots", 9);
+    if (slots < 1 || slots > 54)
+      return "storage.slots must be between 1 and 54 (was " + slots + ")";
+    if (config.getDouble("storage.default-cost", 0.0D) < 0.0D)
+      return "storage.default-cost cannot be negative";
+    ConfigurationSection costs = config.getConfigurationSection("storage.costs");
+    if (costs != null)
+      for (String key : costs.getKeys(false)) {
+        if (costs.getDouble(key, 0.0D) < 0.0D)
+          return "storage.costs." + key + " cannot be negative";
+      }
+    return null;
+  }
+}
@@ -3,115 +3,518 @@ package dev.lsdmc;
 import dev.lsdmc.utils.Constants;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.inventory.ItemStack;
 
 public class StorageDataManager {
+  // Top-level sections of storage.yml, in file order
+  private static final String[] SECTIONS = { "unlocked-slots", "donor-slots", "donor-ranks", "stored-items" };
+  
   private final StorageSlots plugin;
   
   private final File storageFile;
   
-  private final YamlConfiguration storageData;
+  // Each player's part of storage.yml, serialized when the player is written; the IO thread joins them into the file
+  private final Map<UUID, PlayerYaml> playerYaml = new ConcurrentHashMap<>();
+  
+  // Reused to serialize one player at a time; main thread only
+  private final YamlConfiguration playerWriter = new YamlConfiguration();
   
   private final Map<UUID, PlayerStorageData> playerData;
   
-  private boolean savePending;
+  private final PlayerNameIndex nameIndex;
+  
+  private final ItemIndex itemIndex = new ItemIndex();
+  
+  // Single writer thread, so file writes land in the order their snapshots were taken
+  private final ExecutorService io;
+  
+  // Players changed since their last write; a full save rewrites everyone and drops removed players
+  private final Set<UUID> dirtyPlayers = ConcurrentHashMap.newKeySet();
+  
+  private volatile boolean fullSavePending;
+  
+  // When the oldest unsaved change was made, 0 while everything is saved
+  private volatile long oldestDirtyAt;
+  
+  // Batch taken by an incremental save that has not reached the file yet
+  private List<UUID> inFlightBatch;
+  
+  private boolean inFlightFull;
+  
+  // Main-thread time the last incremental save spent serializing players
+  private volatile long lastSerializeNanos;
+  
+  // Time the last storage.yml write took on the IO thread, joining the players included
+  private volatile long lastWriteNanos;
   
   public StorageDataManager(StorageSlots plugin) {
     this.plugin = plugin;
     this.storageFile = new File(plugin.getDataFolder(), "storage.yml");
-    this.storageData = YamlConfiguration.loadConfiguration(this.storageFile);
     this.playerData = new ConcurrentHashMap<>();
+    this.nameIndex = new PlayerNameIndex(plugin, new File(plugin.getDataFolder(), "names.yml"));
+    this.io = Executors.newSingleThreadExecutor(runnable -> {
+          Thread thread = new Thread(runnable, "StorageSlots-IO");
+          thread.setDaemon(true);
+          return thread;
+        });
     loadData();
+    // Gives every loaded player their cached text, so the first save that writes only dirty players still writes a complete file
+    for (UUID playerId : this.playerData.keySet())
+      writePlayer(playerId); 
+    this.nameIndex.load(this.playerData.keySet());
+    saveNames();
+  }
+  
+  public PlayerNameIndex getNameIndex() {
+    return this.nameIndex;
+  }
+  
+  public ItemIndex getItemIndex() {
+    return this.itemIndex;
   }
   
   public PlayerStorageData getPlayerData(UUID playerId) {
-    return this.playerData.computeIfAbsent(playerId, PlayerStorageData::new);
+    return this.playerData.computeIfAbsent(playerId, id -> {
+          PlayerStorageData data = new PlayerStorageData(id);
+          data.attach(this.itemIndex, this.plugin.getStorageStats());
+          return data;
+        });
+  }
+  
+  /**
+   * Returns the player's storage if any is held, without creating an entry for them.
+   */
+  public PlayerStorageData findPlayerData(UUID playerId) {
+    return this.playerData.get(playerId);
   }
   
   public Set<UUID> getAllStoredPlayerIds() {
     return new HashSet<>(this.playerData.keySet());
   }
   
+  /**
+   * Marks one player's storage as changed so the next save writes it.
+   */
+  public void markDirty(UUID playerId) {
+    this.dirtyPlayers.add(playerId);
+    noteChange();
+  }
+  
+  /**
+   * Marks all storage as changed; the next save rewrites every player and drops removed ones.
+   */
   public void markDirty() {
-    this.savePending = true;
+    this.fullSavePending = true;
+    noteChange();
+  }
+  
+  private void noteChange() {
+    if (this.oldestDirtyAt == 0L)
+      this.oldestDirtyAt = System.currentTimeMillis(); 
   }
   
   public boolean isSavePending() {
-    return this.savePending;
+    return this.fullSavePending || !this.dirtyPlayers.isEmpty();
+  }
+  
+  /**
+   * Number of players the next save would write.
+   */
+  public int getDirtyPlayerCount() {
+    return this.fullSavePending ? this.playerData.size() : this.dirtyPlayers.size();
+  }
+  
+  /**
+   * Time of the oldest change not yet on disk, or 0 if there is none.
+   */
+  public long getOldestUnsavedChange() {
+    return this.oldestDirtyAt;
   }
   
+  public boolean isSaveRunning() {
+    return this.inFlightBatch != null;
+  }
+  
+  /**
+   * Main-thread time the last incremental save spent serializing its players, in nanoseconds.
+   */
+  public long getLastSerializeNanos() {
+    return this.lastSerializeNanos;
+  }
+  
+  /**
+   * How long the last write of storage.yml took on the IO thread, in nanoseconds.
+   */
+  public long getLastWriteNanos() {
+    return this.lastWriteNanos;
+  }
+  
+  /**
+   * Writes every pending change and waits for the file. Also takes over the batch of an
+   * incremental save that has not finished, e.g. because the work scheduler was stopped.
+   */
   public void saveData() {
-    if (!this.savePending)
+    saveNames();
+    if (this.inFlightBatch != null) {
+      restoreDirty(this.inFlightBatch, this.inFlightFull);
+      this.inFlightBatch = null;
+    } 
+    if (!isSavePending())
       return; 
+    boolean full = this.fullSavePending;
+    List<UUID> batch = takeDirtyPlayers();
+    for (UUID playerId : batch)
+      writePlayer(playerId); 
+    if (full)
+      removeStalePlayers(); 
+    if (!writeFile())
+      restoreDirty(batch, full); 
+  }
+  
+  /**
+   * Persists pending changes soon without blocking the caller: spread over ticks when the
+   * work scheduler is running, otherwise immediately.
+   */
+  public void requestSave() {
+    TickBudgetScheduler scheduler = this.plugin.getWorkScheduler();
+    if (scheduler != null) {
+      saveIncrementally(scheduler);
+    } else {
+      saveData();
+    } 
+  }
+  
+  /**
+   * Saves like {@link #saveData()}, but serializes one dirty player per job on {@code scheduler},
+   * and storage.yml is then joined from every player's cached text and written on the IO thread.
+   * The main thread's share follows the number of dirty players, not the size of the file, so a
+   * large backlog never costs a single long tick. Changes made while the pass is running are
+   * picked up by the next save. Completes with whether the file was written, or true right
+   * away if there was nothing to do or a save is already running.
+   */
+  public CompletableFuture<Boolean> saveIncrementally(TickBudgetScheduler scheduler) {
+    saveNames();
+    if (!isSavePending() || this.inFlightBatch != null)
+      return CompletableFuture.completedFuture(Boolean.valueOf(true)); 
+    boolean full = this.fullSavePending;
+    List<UUID> batch = takeDirtyPlayers();
+    this.inFlightBatch = batch;
+    this.inFlightFull = full;
+    this.lastSerializeNanos = 0L;
+    CompletableFuture<Boolean> done = new CompletableFuture<>();
+    scheduler.submitEach(batch, this::writePlayerTimed, () -> {
+          // saveData() may have taken this batch over already
+          if (this.inFlightBatch != batch) {
+            done.complete(Boolean.valueOf(true));
+            return;
+          } 
+          this.inFlightBatch = null;
+          if (full) {
+            long started = System.nanoTime();
+            removeStalePlayers();
+            this.lastSerializeNanos += System.nanoTime() - started;
+          } 
+          writeFileAsync().thenAccept(written -> {
+                if (!written.booleanValue())
+                  restoreDirty(batch, full); 
+                done.complete(written);
+              });
+        });
+    return done;
+  }
+  
+  private List<UUID> takeDirtyPlayers() {
+    // Reset the age first, so a change racing with the drain is dated rather than lost
+    this.oldestDirtyAt = 0L;
+    boolean full = this.fullSavePending;
+    this.fullSavePending = false;
+    List<UUID> batch = full ? new ArrayList<>(this.playerData.keySet()) : new ArrayList<>();
+    for (Iterator<UUID> iterator = this.dirtyPlayers.iterator(); iterator.hasNext(); ) {
+      UUID playerId = iterator.next();
+      iterator.remove();
+      if (!full)
+        batch.add(playerId); 
+    } 
+    return batch;
+  }
+  
+  private void restoreDirty(Collection<UUID> batch, boolean full) {
+    if (full) {
+      this.fullSavePending = true;
+    } else {
+      this.dirtyPlayers.addAll(batch);
+    } 
+    noteChange();
+  }
+  
+  /**
+   * Serializes just these players and writes storage.yml once on the IO thread.
+   * Used by bulk operations to persist each chunk without a full save.
+   */
+  public CompletableFuture<Boolean> flushPlayers(Collection<UUID> playerIds) {
+    if (playerIds.isEmpty())
+      return CompletableFuture.completedFuture(Boolean.valueOf(true)); 
+    for (UUID playerId : playerIds)
+      writePlayer(playerId); 
+    return writeFileAsync().thenApply(written -> {
+          if (!written.booleanValue())
+            restoreDirty(playerIds, false); 
+          return written;
+        });
+  }
+  
+  /**
+   * Final save on shutdown: serializes every pending player on the calling (main) thread, writes
+   * storage.yml on the IO thread and completes with the players that were written. A failed write
+   * puts them back as pending and completes with an empty list.
+   */
+  public CompletableFuture<List<UUID>> flushPending() {
+    if (this.inFlightBatch != null) {
+      restoreDirty(this.inFlightBatch, this.inFlightFull);
+      this.inFlightBatch = null;
+    } 
+    if (!isSavePending())
+      return CompletableFuture.completedFuture(Collections.emptyList()); 
+    boolean full = this.fullSavePending;
+    List<UUID> batch = takeDirtyPlayers();
+    for (UUID playerId : batch)
+      writePlayer(playerId); 
+    if (full)
+      removeStalePlayers(); 
+    return writeFileAsync().thenApply(written -> {
+          if (written.booleanValue())
+            return batch; 
+          restoreDirty(batch, full);
+          return Collections.emptyList();
+        });
+  }
+  
+  /**
+   * Snapshots the name index on the calling (main) thread if it changed and writes names.yml on
+   * the IO thread, in order with storage.yml writes. Completes with whether the file was written,
+   * or true right away if there was nothing to do.
+   */
+  public CompletableFuture<Boolean> saveNames() {
+    PlayerNameIndex.Snapshot snapshot = this.nameIndex.snapshotIfDirty();
+    if (snapshot == null)
+      return CompletableFuture.completedFuture(Boolean.valueOf(true)); 
     try {
-      if (this.storageData.contains("unlocked-slots"))
-        this.storageData.set("unlocked-slots", null); 
-      if (this.storageData.contains("stored-items"))
-        this.storageData.set("stored-items", null); 
-      if (this.storageData.contains("donor-slots"))
-        this.storageData.set("donor-slots", null); 
-      if (this.storageData.contains("donor-ranks"))
-        this.storageData.set("donor-ranks", null); 
-      for (Map.Entry<UUID, PlayerStorageData> entry : this.playerData.entrySet()) {
-        String uuidStr = ((UUID)entry.getKey()).toString();
-        PlayerStorageData data = entry.getValue();
-        List<Integer> allUnlockedSlots = new ArrayList<>(data.getUnlockedSlots());
-        this.storageData.set("unlocked-slots." + uuidStr, allUnlockedSlots);
-        List<Integer> donorSlotsList = new ArrayList<>(data.getDonorSlots());
-        if (!donorSlotsList.isEmpty())
-          this.storageData.set("donor-slots." + uuidStr, donorSlotsList); 
-        if (data.getCurrentDonorRank() != null)
-          this.storageData.set("donor-ranks." + uuidStr, data.getCurrentDonorRank()); 
-        for (Iterator<Integer> iterator = data.getUnlockedSlots().iterator(); iterator.hasNext(); ) {
-          int slot = ((Integer)iterator.next()).intValue();
-          ItemStack item = data.getItem(slot);
-          if (item != null && !item.getType().isAir())
-            this.storageData.set("stored-items." + uuidStr + "." + slot, item); 
+      return CompletableFuture.supplyAsync(() -> Boolean.valueOf(writeNames(snapshot)), this.io);
+    } catch (RejectedExecutionException e) {
+      return CompletableFuture.completedFuture(Boolean.valueOf(writeNames(snapshot)));
+    } 
+  }
+  
+  /**
+   * Serializes one player into their cached part of storage.yml. The cost follows the size of this
+   * player's storage; the file itself is assembled on the IO thread.
+   */
+  private void writePlayer(UUID playerId) {
+    PlayerStorageData data = this.playerData.get(playerId);
+    if (data == null) {
+      this.playerYaml.remove(playerId);
+      return;
+    } 
+    String uuidStr = playerId.toString();
+    YamlConfiguration yaml = this.playerWriter;
+    for (String section : SECTIONS)
+      yaml.set(section, null); 
+    yaml.set("unlocked-slots." + uuidStr, new ArrayList<>(data.getUnlockedSlots()));
+    List<Integer> donorSlotsList = new ArrayList<>(data.getDonorSlots());
+    if (!donorSlotsList.isEmpty())
+      yaml.set("donor-slots." + uuidStr, donorSlotsList); 
+    if (data.getCurrentDonorRank() != null)
+      yaml.set("donor-ranks." + uuidStr, data.getCurrentDonorRank()); 
+    for (Iterator<Integer> iterator = data.getUnlockedSlots().iterator(); iterator.hasNext(); ) {
+      int slot = ((Integer)iterator.next()).intValue();
+      ItemStack item = data.getItem(slot);
+      if (item != null && !item.getType().isAir())
+        yaml.set("stored-items." + uuidStr + "." + slot, item); 
+    } 
+    this.playerYaml.put(playerId, PlayerYaml.parse(yaml.saveToString()));
+  }
+  
+  private void writePlayerTimed(UUID playerId) {
+    long started = System.nanoTime();
+    writePlayer(playerId);
+    this.lastSerializeNanos += System.nanoTime() - started;
+  }
+  
+  private void removeStalePlayers() {
+    this.playerYaml.keySet().removeIf(playerId -> !this.playerData.containsKey(playerId));
+  }
+  
+  /**
+   * Joins the cached players into the text of storage.yml. Runs on the IO thread; each player's
+   * text is immutable, so a player written meanwhile appears either entirely old or entirely new.
+   */
+  private String joinPlayers() {
+    List<PlayerYaml> players = new ArrayList<>(this.playerYaml.values());
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < SECTIONS.length; i++) {
+      boolean started = false;
+      for (PlayerYaml player : players) {
+        String body = player.sections[i];
+        if (body == null)
+          continue; 
+        if (!started) {
+          text.append(SECTIONS[i]).append(":\n");
+          started = true;
         } 
+        text.append(body);
       } 
-      this.storageData.save(this.storageFile);
-      this.savePending = false;
-      if (this.plugin.getConfig().getBoolean("debug.enabled", false))
-        this.plugin.getLogger().info("Successfully saved storage data for " + this.playerData.size() + " players"); 
+    } 
+    return text.toString();
+  }
+  
+  /**
+   * Writes the cached players and waits for it, behind any asynchronous write still queued.
+   */
+  private boolean writeFile() {
+    int players = this.playerData.size();
+    try {
+      return this.io.submit(() -> writeText(players)).get().booleanValue();
+    } catch (RejectedExecutionException e) {
+      return writeText(players);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return writeText(players);
+    } catch (ExecutionException e) {
+      this.plugin.getLogger().severe("Failed to save storage data: " + e.getCause());
+      return false;
+    } 
+  }
+  
+  /**
+   * Joins the cached players into storage.yml and writes it, both on the IO thread.
+   */
+  private CompletableFuture<Boolean> writeFileAsync() {
+    int players = this.playerData.size();
+    try {
+      return CompletableFuture.supplyAsync(() -> Boolean.valueOf(writeText(players)), this.io);
+    } catch (RejectedExecutionException e) {
+      return CompletableFuture.completedFuture(Boolean.valueOf(writeText(players)));
+    } 
+  }
+  
+  private boolean writeText(int players) {
+    long started = System.nanoTime();
+    try {
+      replaceFile(this.storageFile.toPath(), joinPlayers());
+      if (this.plugin.getConfigManager().isDebugEnabled())
+        this.plugin.getLogger().info("Successfully saved storage data for " + players + " players"); 
+      return true;
     } catch (IOException e) {
       this.plugin.getLogger().severe("Failed to save storage data: " + e.getMessage());
+      return false;
+    } finally {
+      this.lastWriteNanos = System.nanoTime() - started;
+    } 
+  }
+  
+  /**
+   * Writes a stats.json snapshot taken by the caller on the IO thread, replaced the same way as
+   * storage.yml. Completes with whether the file was written.
+   */
+  public CompletableFuture<Boolean> writeStats(String json) {
+    try {
+      return CompletableFuture.supplyAsync(() -> Boolean.valueOf(writeStatsFile(json)), this.io);
+    } catch (RejectedExecutionException e) {
+      return CompletableFuture.completedFuture(Boolean.valueOf(writeStatsFile(json)));
+    } 
+  }
+  
+  private boolean writeStatsFile(String json) {
+    try {
+      replaceFile(new File(this.plugin.getDataFolder(), "stats.json").toPath(), json);
+      return true;
+    } catch (IOException e) {
+      this.plugin.getLogger().warning("Failed to export statistics: " + e.getMessage());
+      return false;
+    } 
+  }
+  
+  private boolean writeNames(PlayerNameIndex.Snapshot snapshot) {
+    try {
+      replaceFile(this.nameIndex.getFile().toPath(), snapshot.toYaml());
+      if (this.plugin.getConfigManager().isDebugEnabled())
+        this.plugin.getLogger().info("Successfully saved names for " + snapshot.size() + " players"); 
+      return true;
+    } catch (IOException e) {
+      this.nameIndex.markDirty();
+      this.plugin.getLogger().severe("Failed to save player name index: " + e.getMessage());
+      return false;
+    } 
+  }
+  
+  // Write beside the real file and swap it in, so a crash mid-write never leaves a truncated file
+  private static void replaceFile(Path target, String text) throws IOException {
+    Files.createDirectories(target.getParent());
+    Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+    Files.writeString(temp, text, StandardCharsets.UTF_8);
+    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+  
+  /**
+   * Finishes queued file writes and stops the IO thread. Call after the final save on shutdown.
+   */
+  public void shutdown() {
+    this.io.shutdown();
+    try {
+      if (!this.io.awaitTermination(10L, TimeUnit.SECONDS))
+        this.plugin.getLogger().warning("Timed out waiting for storage writes to finish"); 
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
     } 
   }
   
   private void loadData() {
     if (!this.storageFile.exists())
       return; 
-    if (this.storageData.contains("unlocked-slots"))
-      loadUnlockedSlots(); 
-    if (this.storageData.contains("donor-slots"))
-      loadDonorSlots(); 
-    if (this.storageData.contains("donor-ranks"))
-      loadDonorRanks(); 
-    if (this.storageData.contains("stored-items"))
-      loadStoredItems(); 
-    if (this.plugin.getConfig().getBoolean("debug.enabled", false))
+    YamlConfiguration storageData = YamlConfiguration.loadConfiguration(this.storageFile);
+    if (storageData.contains("unlocked-slots"))
+      loadUnlockedSlots(storageData); 
+    if (storageData.contains("donor-slots"))
+      loadDonorSlots(storageData); 
+    if (storageData.contains("donor-ranks"))
+      loadDonorRanks(storageData); 
+    if (storageData.contains("stored-items"))
+      loadStoredItems(storageData); 
+    if (this.plugin.getConfigManager().isDebugEnabled())
       this.plugin.getLogger().info("Successfully loaded storage data for " + this.playerData.size() + " players"); 
   }
   
-  private void loadUnlockedSlots() {
-    ConfigurationSection unlockedSection = this.storageData.getConfigurationSection("unlocked-slots");
+  private void loadUnlockedSlots(YamlConfiguration storageData) {
+    ConfigurationSection unlockedSection = storageData.getConfigurationSection("unlocked-slots");
     if (unlockedSection == null)
       return; 
     for (String uuidStr : unlockedSection.getKeys(false)) {
       try {
         UUID uuid = UUID.fromString(uuidStr);
         PlayerStorageData data = getPlayerData(uuid);
-        List<Integer> slots = this.storageData.getIntegerList("unlocked-slots." + uuidStr);
+        List<Integer> slots = storageData.getIntegerList("unlocked-slots." + uuidStr);
         slots.stream()
           .filter(slot -> (slot.intValue() >= 0 && slot.intValue() < 54))
           .forEach(slot -> {
@@ -127,15 +530,15 @@ public class StorageDataManager {
     } 
   }
   
-  private void loadDonorSlots() {
-    ConfigurationSection donorSection = this.storageData.getConfigurationSection("donor-slots");
+  private void loadDonorSlots(YamlConfiguration storageData) {
+    ConfigurationSection donorSection = storageData.getConfigurationSection("donor-slots");
     if (donorSection == null)
       return; 
     for (String uuidStr : donorSection.getKeys(false)) {
       try {
         UUID uuid = UUID.fromString(uuidStr);
         PlayerStorageData data = getPlayerData(uuid);
-        List<Integer> donorSlots = this.storageData.getIntegerList("donor-slots." + uuidStr);
+        List<Integer> donorSlots = storageData.getIntegerList("donor-slots." + uuidStr);
         donorSlots.stream()
           .filter(slot -> Constants.Slots.isDonorSlot(slot.intValue()))
           .forEach(data::unlockDonorSlot);
@@ -145,15 +548,15 @@ public class StorageDataManager {
     } 
   }
   
-  private void loadDonorRanks() {
-    ConfigurationSection donorRankSection = this.storageData.getConfigurationSection("donor-ranks");
+  private void loadDonorRanks(YamlConfiguration storageData) {
+    ConfigurationSection donorRankSection = storageData.getConfigurationSection("donor-ranks");
     if (donorRankSection == null)
       return; 
     for (String uuidStr : donorRankSection.getKeys(false)) {
       try {
         UUID uuid = UUID.fromString(uuidStr);
         PlayerStorageData data = getPlayerData(uuid);
-        String donorRank = this.storageData.getString("donor-ranks." + uuidStr);
+        String donorRank = storageData.getString("donor-ranks." + uuidStr);
         if (donorRank != null)
           data.setCurrentDonorRank(donorRank); 
       } catch (IllegalArgumentException e) {
@@ -162,8 +565,8 @@ public class StorageDataManager {
     } 
   }
   
-  private void loadStoredItems() {
-    ConfigurationSection itemsSection = this.storageData.getConfigurationSection("stored-items");
+  private void loadStoredItems(YamlConfiguration storageData) {
+    ConfigurationSection itemsSection = storageData.getConfigurationSection("stored-items");
     if (itemsSection == null)
       return; 
     for (String uuidStr : itemsSection.getKeys(false)) {
@@ -176,7 +579,7 @@ public class StorageDataManager {
             try {
               int slot = Integer.parseInt(slotStr);
               if (slot >= 0 && slot < 54 && data.hasSlotUnlocked(slot)) {
-                ItemStack item = this.storageData.getItemStack("stored-items." + uuidStr + "." + slotStr);
+                ItemStack item = storageData.getItemStack("stored-items." + uuidStr + "." + slotStr);
                 if (item != null && !this.plugin.getConfigManager().isProhibitedItem(item))
                   data.setItem(slot, item); 
               } 
@@ -191,14 +594,61 @@ public class StorageDataManager {
   }
   
   public void resetAllData() {
+    for (PlayerStorageData data : this.playerData.values())
+      data.detach(); 
     this.playerData.clear();
-    this.savePending = true;
-    saveData();
+    this.itemIndex.clear();
+    markDirty();
+    requestSave();
   }
   
   public void resetPlayerData(UUID playerId) {
-    this.playerData.remove(playerId);
-    this.savePending = true;
-    saveData();
+    PlayerStorageData removed = this.playerData.remove(playerId);
+    if (removed != null)
+      removed.detach(); 
+    markDirty(playerId);
+    requestSave();
+  }
+  
+  private static final class PlayerYaml {
+    // Body of each of SECTIONS for this player, already indented under the section header; null if absent
+    private final String[] sections;
+    
+    private PlayerYaml(String[] sections) {
+      this.sections = sections;
+    }
+    
+    /**
+     * Splits one player's dump by top-level section. Everything inside a section is indented, so
+     * only section headers start in the first column.
+     */
+    private static PlayerYaml parse(String text) {
+      String[] sections = new String[SECTIONS.length];
+      int current = -1;
+      StringBuilder body = new StringBuilder();
+      for (String line : text.split("\n")) {
+        if (line.isEmpty())
+          continue; 
+        if (line.charAt(0) != ' ') {
+          if (current >= 0)
+            sections[current] = body.toString(); 
+          current = sectionIndex(line);
+          body.setLength(0);
+        } else {
+          body.append(line).append('\n');
+        } 
+      } 
+      if (current >= 0)
+        sections[current] = body.toString(); 
+      return new PlayerYaml(sections);
+    }
+    
+    private static int sectionIndex(String header) {
+      for (int i = 0; i < SECTIONS.length; i++) {
+        if (header.equals(SECTIONS[i] + ":"))
+          return i; 
+      } 
+      throw new IllegalStateException("Unexpected top-level line in player data: " + header);
+    }
   }
 }
@@ -1,19 +1,25 @@
 package dev.lsdmc;
 
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
 import org.black_ixx.playerpoints.PlayerPoints;
 import org.black_ixx.playerpoints.PlayerPointsAPI;
 import org.bukkit.Bukkit;
-import org.bukkit.command.Command;
-import org.bukkit.command.CommandExecutor;
-import org.bukkit.command.CommandSender;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.RegisteredServiceProvider;
-import org.bukkit.scheduler.BukkitRunnable;
 import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
 
 public class StorageEconomyManager {
   private final StorageSlots plugin;
@@ -23,12 +29,41 @@ public class StorageEconomyManager {
   
   private final StorageConfig config;
   
-  private boolean apiWorking = true;
+  // One breaker per provider path, so a failing provider is skipped instead of retried on every click
+  private final CircuitBreaker vaultBreaker;
+  
+  private final CircuitBreaker pointsApiBreaker;
+  
+  private final CircuitBreaker commandBreaker;
+  
+  private final EconomyTransactionExecutor transactions;
+  
+  private final MainThreadHandoff mainThread;
+  
+  // Console-command fallback charges waiting for the next tick
+  private final Queue<PendingCommand> pendingCommands = new ConcurrentLinkedQueue<>();
+  
+  private final AtomicBoolean commandDrainScheduled = new AtomicBoolean();
+  
+  // Last balance seen from each provider; written by every call that reads or changes a balance
+  private final Map<UUID, CachedBalance> vaultBalances = new ConcurrentHashMap<>();
+  
+  private final Map<UUID, CachedBalance> pointsBalances = new ConcurrentHashMap<>();
+  
+  // Idempotent charges by key, and the paid ones that can still be refunded
+  private final Map<UUID, CompletableFuture<Boolean>> chargesByKey = new ConcurrentHashMap<>();
+  
+  private final Map<UUID, CollectedCharge> collectedCharges = new ConcurrentHashMap<>();
   
   public StorageEconomyManager(StorageSlots plugin, StorageConfig config, PlayerPointsAPI pointsAPI) {
     this.plugin = plugin;
+    this.mainThread = plugin.getMainThread();
     this.config = config;
     this.pointsAPI = pointsAPI;
+    this.transactions = new EconomyTransactionExecutor(config.getEconomyThreads(), config.getEconomyTimeoutMs(), plugin.getLogger());
+    this.vaultBreaker = newCircuitBreaker("Vault");
+    this.pointsApiBreaker = newCircuitBreaker("PlayerPoints API");
+    this.commandBreaker = newCircuitBreaker("PlayerPoints command");
     
     // Initialize Vault economy if any operation uses it
     Economy tempVaultEconomy = null;
@@ -44,12 +79,22 @@ public class StorageEconomyManager {
     
     if (pointsAPI == null) {
       plugin.getLogger().warning("PlayerPointsAPI is null - economy system will be limited");
-      this.apiWorking = false;
     } else {
       plugin.getLogger().info("StorageEconomyManager initialized with PlayerPoints API");
     }
   }
   
+  private CircuitBreaker newCircuitBreaker(String name) {
+    return new CircuitBreaker(name, 
+        this.config.getBreakerWindowSize(), 
+        this.config.getBreakerMinimumCalls(), 
+        this.config.getBreakerFailureRateThreshold(), 
+        this.config.getBreakerSlowCallRateThreshold(), 
+        this.config.getBreakerSlowCallThresholdMs(), 
+        this.config.getBreakerOpenDurationMs(), 
+        this.config.getBreakerHalfOpenProbes());
+  }
+  
   private Economy setupVaultEconomy() {
     if (!plugin.getServer().getPluginManager().isPluginEnabled("Vault")) {
       plugin.getLogger().warning("Vault is not enabled!");
@@ -77,6 +122,10 @@ public class StorageEconomyManager {
   }
   
   public CompletableFuture<Boolean> takeMoney(final Player player, double amount, String operation) {
+    return charge(player, amount, operation, UUID.randomUUID());
+  }
+  
+  private CompletableFuture<Boolean> charge(final Player player, double amount, String operation, UUID chargeId) {
     final CompletableFuture<Boolean> future = new CompletableFuture<>();
     if (player == null || !player.isOnline()) {
       future.complete(Boolean.valueOf(false));
@@ -114,76 +163,201 @@ public class StorageEconomyManager {
         currencyName = this.config.getSlotPurchaseCurrency();
     }
     
-    // Use Vault economy if enabled and available
-    if (useVault && this.vaultEconomy != null) {
+    // Use Vault economy if enabled and available, otherwise fall back to PlayerPoints
+    final String currency = currencyName;
+    BiConsumer<Boolean, Throwable> lateOutcome = (success, error) -> settleLateCharge(player, amount, operation, chargeId, success, error);
+    if (useVault && this.vaultEconomy != null)
+      return recordCharge(operation, amount, this.mainThread.deliver(this.transactions.submit(player.getUniqueId(), () -> withdrawVault(player, amount, currency), lateOutcome)));
+    final int points = (int)amount;
+    return recordCharge(operation, amount, this.mainThread.deliver(this.transactions.submitAsync(player.getUniqueId(), () -> withdrawPoints(player, points), lateOutcome)));
+  }
+  
+  /**
+   * Real outcome of a charge whose caller already got a timeout. The caller treated the charge as
+   * failed and delivered nothing for it, so money the provider took anyway is given back.
+   */
+  private void settleLateCharge(Player player, double amount, String operation, UUID chargeId, Boolean success, Throwable error) {
+    if (error != null || !success.booleanValue()) {
+      this.plugin.getLogger().info("Charge " + chargeId + " for " + player.getName() + " finished after timing out without taking anything");
+      return;
+    } 
+    this.plugin.getLogger().warning("Charge " + chargeId + " of " + amount + " for " + player.getName() + " went through after timing out; refunding it");
+    returnCharge(player, chargeId, new CollectedCharge(amount, operation));
+  }
+  
+  private CompletableFuture<Boolean> recordCharge(String operation, double amount, CompletableFuture<Boolean> charge) {
+    StorageStats stats = this.plugin.getStorageStats();
+    return charge.whenComplete((success, error) -> stats.recordCharge(operation, amount, error == null && success.booleanValue()));
+  }
+  
+  /**
+   * Charges at most once per {@code idempotencyKey}: repeated calls with the same key return
+   * the first charge's future instead of charging again. A successful paid charge can later be
+   * reversed exactly once with {@link #refund}. If the returned future times out, the charge is
+   * refunded by this manager should the provider still complete it.
+   */
+  public CompletableFuture<Boolean> takeMoney(final Player player, double amount, String operation, UUID idempotencyKey) {
+    return this.chargesByKey.computeIfAbsent(idempotencyKey, key -> {
+      boolean free = (amount <= 0 || player == null || player.hasPermission("storageslots.bypass.cost"));
+      return charge(player, amount, operation, key).thenApply(success -> {
+        if (success.booleanValue() && !free)
+          this.collectedCharges.put(key, new CollectedCharge(amount, operation)); 
+        return success;
+      });
+    });
+  }
+  
+  /**
+   * Returns the money taken under {@code idempotencyKey}. Does nothing for unknown keys, free
+   * charges or keys already refunded, so it is safe to call from every rollback path.
+   */
+  public CompletableFuture<Boolean> refund(OfflinePlayer player, UUID idempotencyKey) {
+    CollectedCharge charge = this.collectedCharges.remove(idempotencyKey);
+    if (charge == null)
+      return CompletableFuture.completedFuture(Boolean.valueOf(false)); 
+    return returnCharge(player, idempotencyKey, charge);
+  }
+  
+  private CompletableFuture<Boolean> returnCharge(OfflinePlayer player, UUID idempotencyKey, CollectedCharge charge) {
+    CompletableFuture<Boolean> deposit;
+    if (usesVault(charge.operation)) {
+      deposit = this.transactions.submit(player.getUniqueId(), () -> depositVault(player, charge.amount, idempotencyKey));
+    } else {
+      deposit = this.transactions.submitAsync(player.getUniqueId(), () -> depositPoints(player, (int)charge.amount, idempotencyKey));
+    } 
+    return this.mainThread.deliver(deposit.whenComplete((success, error) -> {
+      if (error == null && success.booleanValue())
+        this.plugin.getStorageStats().recordRefund(charge.operation, charge.amount); 
+    }));
+  }
+  
+  /**
+   * Drops the bookkeeping for a settled charge.
+   */
+  public void forgetCharge(UUID idempotencyKey) {
+    this.chargesByKey.remove(idempotencyKey);
+    this.collectedCharges.remove(idempotencyKey);
+  }
+  
+  private boolean depositVault(OfflinePlayer player, double amount, UUID idempotencyKey) {
+    try {
+      boolean success = this.vaultEconomy.depositPlayer(player, amount).transactionSuccess();
+      if (success) {
+        this.plugin.getLogger().info("Refunded " + amount + " to " + player.getName() + " via Vault (charge " + idempotencyKey + ")");
+      } else {
+        this.plugin.getLogger().severe("Vault refund of " + amount + " to " + player.getName() + " failed (charge " + idempotencyKey + ")");
+      } 
+      return success;
+    } catch (Exception e) {
+      this.plugin.getLogger().log(Level.SEVERE, "Error refunding " + amount + " to " + player.getName() + " (charge " + idempotencyKey + ")", e);
+      return false;
+    } 
+  }
+  
+  private CompletableFuture<Boolean> depositPoints(OfflinePlayer player, int points, UUID idempotencyKey) {
+    if (this.pointsAPI != null && this.pointsApiBreaker.tryAcquire()) {
+      long started = System.nanoTime();
       try {
-        if (this.vaultEconomy.has(player, amount)) {
-          boolean success = this.vaultEconomy.withdrawPlayer(player, amount).transactionSuccess();
-          if (success) {
-            this.plugin.getLogger().info("Successfully took " + amount + " " + currencyName + " from " + player.getName() + " via Vault");
-            future.complete(Boolean.valueOf(true));
-          } else {
-            this.plugin.getLogger().warning("Vault transaction failed for " + player.getName());
-            future.complete(Boolean.valueOf(false));
-          }
-        } else {
-          this.plugin.getLogger().info("Insufficient " + currencyName + " for " + player.getName() + ": " + this.vaultEconomy.getBalance(player) + "/" + amount);
-          future.complete(Boolean.valueOf(false));
-        }
+        if (this.pointsAPI.give(player.getUniqueId(), points)) {
+          this.pointsApiBreaker.onSuccess(System.nanoTime() - started);
+          this.pointsBalances.remove(player.getUniqueId());
+          this.plugin.getLogger().info("Refunded " + points + " points to " + player.getName() + " via API (charge " + idempotencyKey + ")");
+          return CompletableFuture.completedFuture(Boolean.valueOf(true));
+        } 
+        this.pointsApiBreaker.onFailure(System.nanoTime() - started);
       } catch (Exception e) {
-        this.plugin.getLogger().log(Level.SEVERE, "Error with Vault economy for " + player.getName(), e);
-        future.complete(Boolean.valueOf(false));
+        this.pointsApiBreaker.onFailure(System.nanoTime() - started);
+        this.plugin.getLogger().log(Level.WARNING, "Error refunding points to " + player.getName() + " via API, trying command fallback", e);
+      } 
+    } 
+    return dispatchPointsCommand("points give " + player.getName() + " " + points).thenApply(success -> {
+      this.pointsBalances.remove(player.getUniqueId());
+      if (success.booleanValue()) {
+        this.plugin.getLogger().info("Refunded " + points + " points to " + player.getName() + " via command fallback (charge " + idempotencyKey + ")");
+      } else {
+        this.plugin.getLogger().severe("Refund of " + points + " points to " + player.getName() + " failed (charge " + idempotencyKey + ")");
+      } 
+      return success;
+    });
+  }
+  
+  private boolean withdrawVault(Player player, double amount, String currencyName) {
+    if (!this.vaultBreaker.tryAcquire())
+      throw new IllegalStateException("Vault economy is temporarily unavailable"); 
+    long started = System.nanoTime();
+    try {
+      double balance = this.vaultEconomy.getBalance(player);
+      recordBalance(this.vaultBalances, player, balance);
+      if (balance >= amount) {
+        EconomyResponse response = this.vaultEconomy.withdrawPlayer(player, amount);
+        if (response.transactionSuccess()) {
+          this.vaultBreaker.onSuccess(System.nanoTime() - started);
+          recordBalance(this.vaultBalances, player, response.balance);
+          this.plugin.getLogger().info("Successfully took " + amount + " " + currencyName + " from " + player.getName() + " via Vault");
+          return true;
+        }
+        this.vaultBreaker.onFailure(System.nanoTime() - started);
+        this.plugin.getLogger().warning("Vault transaction failed for " + player.getName());
+        return false;
       }
-      return future;
+      this.vaultBreaker.onSuccess(System.nanoTime() - started);
+      this.plugin.getLogger().info("Insufficient " + currencyName + " for " + player.getName() + ": " + balance + "/" + amount);
+      return false;
+    } catch (Exception e) {
+      this.vaultBreaker.onFailure(System.nanoTime() - started);
+      this.plugin.getLogger().log(Level.SEVERE, "Error with Vault economy for " + player.getName(), e);
+      return false;
     }
-    
-    // Fallback to PlayerPoints
-    final int points = (int)amount;
-    
+  }
+  
+  private CompletableFuture<Boolean> withdrawPoints(Player player, int points) {
     // If API is null, try command fallback directly
     if (this.pointsAPI == null) {
       this.plugin.getLogger().warning("PlayerPoints API is null, using command fallback for " + player.getName());
-      boolean success = executePointsCommand(player.getName(), points);
-      future.complete(Boolean.valueOf(success));
-      return future;
+      return withdrawPointsViaCommand(player, points);
     }
-    
-    (new BukkitRunnable() {
-        public void run() {
-          try {
-            if (StorageEconomyManager.this.apiWorking) {
-              int currentPoints = StorageEconomyManager.this.pointsAPI.look(player.getUniqueId());
-              if (currentPoints >= points) {
-                boolean bool = StorageEconomyManager.this.pointsAPI.take(player.getUniqueId(), points);
-                if (bool) {
-                  StorageEconomyManager.this.plugin.getLogger().info("Successfully took " + points + " points from " + player.getName() + " via API");
-                  future.complete(Boolean.valueOf(true));
-                  return;
-                } 
-                StorageEconomyManager.this.plugin.getLogger().warning("API failed to take points from " + player.getName() + ", trying command fallback");
-                StorageEconomyManager.this.apiWorking = false;
-              } else {
-                StorageEconomyManager.this.plugin.getLogger().info("Insufficient points for " + player.getName() + ": " + currentPoints + "/" + points);
-                future.complete(Boolean.valueOf(false));
-                return;
-              } 
-            } 
-            boolean success = StorageEconomyManager.this.executePointsCommand(player.getName(), points);
-            if (success) {
-              StorageEconomyManager.this.plugin.getLogger().info("Successfully took " + points + " points from " + player.getName() + " via command fallback");
-              future.complete(Boolean.valueOf(true));
-            } else {
-              StorageEconomyManager.this.plugin.getLogger().severe("Both API and command fallback failed for " + player.getName());
-              future.complete(Boolean.valueOf(false));
-            } 
-          } catch (Exception e) {
-            StorageEconomyManager.this.plugin.getLogger().log(Level.SEVERE, "Error taking points from " + player.getName(), e);
-            boolean success = StorageEconomyManager.this.executePointsCommand(player.getName(), points);
-            future.complete(Boolean.valueOf(success));
-          } 
-        }
-      }).runTaskAsynchronously((Plugin)this.plugin);
-    return future;
+    if (this.pointsApiBreaker.tryAcquire()) {
+      long started = System.nanoTime();
+      try {
+        int currentPoints = this.pointsAPI.look(player.getUniqueId());
+        recordBalance(this.pointsBalances, player, currentPoints);
+        if (currentPoints < points) {
+          this.pointsApiBreaker.onSuccess(System.nanoTime() - started);
+          this.plugin.getLogger().info("Insufficient points for " + player.getName() + ": " + currentPoints + "/" + points);
+          return CompletableFuture.completedFuture(Boolean.valueOf(false));
+        } 
+        if (this.pointsAPI.take(player.getUniqueId(), points)) {
+          this.pointsApiBreaker.onSuccess(System.nanoTime() - started);
+          recordBalance(this.pointsBalances, player, currentPoints - points);
+          this.plugin.getLogger().info("Successfully took " + points + " points from " + player.getName() + " via API");
+          return CompletableFuture.completedFuture(Boolean.valueOf(true));
+        } 
+        this.pointsApiBreaker.onFailure(System.nanoTime() - started);
+        this.plugin.getLogger().warning("API failed to take points from " + player.getName() + ", trying command fallback");
+      } catch (Exception e) {
+        this.pointsApiBreaker.onFailure(System.nanoTime() - started);
+        this.plugin.getLogger().log(Level.SEVERE, "Error taking points from " + player.getName() + ", trying command fallback", e);
+      } 
+    } 
+    return withdrawPointsViaCommand(player, points);
+  }
+  
+  private CompletableFuture<Boolean> withdrawPointsViaCommand(Player player, int points) {
+    if (!this.commandBreaker.tryAcquire())
+      return CompletableFuture.failedFuture(new IllegalStateException("PlayerPoints is temporarily unavailable")); 
+    long started = System.nanoTime();
+    return executePointsCommand(player.getName(), points).thenApply(success -> {
+      // The command path does not report the new balance
+      this.pointsBalances.remove(player.getUniqueId());
+      if (success.booleanValue()) {
+        this.commandBreaker.onSuccess(System.nanoTime() - started);
+        this.plugin.getLogger().info("Successfully took " + points + " points from " + player.getName() + " via command fallback");
+      } else {
+        this.commandBreaker.onFailure(System.nanoTime() - started);
+        this.plugin.getLogger().severe("Both API and command fallback failed for " + player.getName());
+      } 
+      return success;
+    });
   }
   
   public CompletableFuture<Double> getBalance(final Player player) {
@@ -214,46 +388,106 @@ public class StorageEconomyManager {
         useVault = this.config.useVaultForSlotPurchase();
     }
     
-    // Use Vault economy if enabled and available
-    if (useVault && this.vaultEconomy != null) {
-      try {
-        double balance = this.vaultEconomy.getBalance(player);
-        future.complete(Double.valueOf(balance));
-        return future;
-      } catch (Exception e) {
-        this.plugin.getLogger().log(Level.SEVERE, "Error getting Vault balance for " + player.getName(), e);
-        future.complete(Double.valueOf(0.0D));
-        return future;
-      }
+    // Use Vault economy if enabled and available, otherwise fall back to PlayerPoints
+    if (useVault && this.vaultEconomy != null)
+      return this.mainThread.deliver(this.transactions.submit(player.getUniqueId(), () -> lookVault(player)));
+    return this.mainThread.deliver(this.transactions.submit(player.getUniqueId(), () -> lookPoints(player)));
+  }
+  
+  private Double lookVault(Player player) throws Exception {
+    if (!this.vaultBreaker.tryAcquire())
+      throw new IllegalStateException("Vault economy is temporarily unavailable"); 
+    long started = System.nanoTime();
+    try {
+      double balance = this.vaultEconomy.getBalance(player);
+      this.vaultBreaker.onSuccess(System.nanoTime() - started);
+      recordBalance(this.vaultBalances, player, balance);
+      return Double.valueOf(balance);
+    } catch (Exception e) {
+      this.vaultBreaker.onFailure(System.nanoTime() - started);
+      this.plugin.getLogger().log(Level.SEVERE, "Error getting Vault balance for " + player.getName(), e);
+      throw e;
     }
-    
-    // Fallback to PlayerPoints
-    // If API is null, try command fallback directly
+  }
+  
+  private Double lookPoints(Player player) throws Exception {
+    // Without the API there is no way to read a balance
     if (this.pointsAPI == null) {
-      this.plugin.getLogger().warning("PlayerPoints API is null, using command fallback for balance check");
-      int balance = getBalanceViaCommand(player.getName());
-      future.complete(Double.valueOf(balance));
-      return future;
+      this.plugin.getLogger().warning("PlayerPoints API is null, balance unavailable for " + player.getName());
+      return Double.valueOf(0.0D);
     }
-    
-    (new BukkitRunnable() {
-        public void run() {
-          try {
-            if (StorageEconomyManager.this.apiWorking) {
-              int i = StorageEconomyManager.this.pointsAPI.look(player.getUniqueId());
-              future.complete(Double.valueOf(i));
-              return;
-            } 
-            int balance = StorageEconomyManager.this.getBalanceViaCommand(player.getName());
-            future.complete(Double.valueOf(balance));
-          } catch (Exception e) {
-            StorageEconomyManager.this.plugin.getLogger().log(Level.SEVERE, "Error getting balance for " + player.getName(), e);
-            int balance = StorageEconomyManager.this.getBalanceViaCommand(player.getName());
-            future.complete(Double.valueOf(balance));
-          } 
-        }
-      }).runTaskAsynchronously((Plugin)this.plugin);
-    return future;
+    if (!this.pointsApiBreaker.tryAcquire())
+      throw new IllegalStateException("PlayerPoints API is temporarily unavailable"); 
+    long started = System.nanoTime();
+    try {
+      int balance = this.pointsAPI.look(player.getUniqueId());
+      this.pointsApiBreaker.onSuccess(System.nanoTime() - started);
+      recordBalance(this.pointsBalances, player, balance);
+      return Double.valueOf(balance);
+    } catch (Exception e) {
+      this.pointsApiBreaker.onFailure(System.nanoTime() - started);
+      this.plugin.getLogger().log(Level.SEVERE, "Error getting balance for " + player.getName(), e);
+      throw e;
+    } 
+  }
+  
+  private void recordBalance(Map<UUID, CachedBalance> balances, Player player, double balance) {
+    balances.put(player.getUniqueId(), new CachedBalance(balance, System.currentTimeMillis()));
+  }
+  
+  /**
+   * Returns the balance last observed for the operation's currency if it is younger than the
+   * configured TTL. Never calls the economy provider.
+   */
+  public OptionalDouble getCachedBalance(Player player, String operation) {
+    Map<UUID, CachedBalance> balances = usesVault(operation) ? this.vaultBalances : this.pointsBalances;
+    CachedBalance cached = balances.get(player.getUniqueId());
+    if (cached == null || System.currentTimeMillis() - cached.observedAt > this.config.getBalanceCacheTtlMs())
+      return OptionalDouble.empty(); 
+    return OptionalDouble.of(cached.balance);
+  }
+  
+  /**
+   * Main-thread preflight for purchases and fees: true only when a recent balance shows the
+   * player cannot pay. Unknown or stale balances are left for {@link #takeMoney} to decide.
+   */
+  public boolean isClearlyUnaffordable(Player player, double amount, String operation) {
+    if (amount <= 0 || player.hasPermission("storageslots.bypass.cost"))
+      return false; 
+    OptionalDouble balance = getCachedBalance(player, operation);
+    return (balance.isPresent() && balance.getAsDouble() < amount);
+  }
+  
+  public void forgetBalances(UUID playerId) {
+    this.vaultBalances.remove(playerId);
+    this.pointsBalances.remove(playerId);
+  }
+  
+  private boolean usesVault(String operation) {
+    if (this.vaultEconomy == null)
+      return false; 
+    switch (operation) {
+      case "withdrawal-fees":
+        return this.config.useVaultForWithdrawalFees();
+      case "donor-slots":
+        return this.config.useVaultForDonorSlots();
+      default:
+        return this.config.useVaultForSlotPurchase();
+    }
+  }
+  
+  /**
+   * Shutdown drain: waits up to {@code timeoutMs} for economy calls in flight and returns how many
+   * players still have unsettled ones. Console-command charges still waiting for a tick will never
+   * get one, so they fail now without taking anything.
+   */
+  public int awaitIdle(long timeoutMs) throws InterruptedException {
+    failPendingCommands();
+    return this.transactions.awaitIdle(timeoutMs);
+  }
+  
+  public void shutdown() {
+    this.transactions.shutdown();
   }
   
   public String formatCurrency(double amount) {
@@ -303,151 +537,122 @@ public class StorageEconomyManager {
   }
   
   public CompletableFuture<Boolean> takePoints(final Player player, final int amount) {
-    if (player == null || !player.isOnline() || amount <= 0)
+    if (player == null || !player.isOnline() || amount <= 0 || this.pointsAPI == null)
       return CompletableFuture.completedFuture(false);
-    final CompletableFuture<Boolean> future = new CompletableFuture<>();
-    Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+    UUID playerId = player.getUniqueId();
+    String playerName = player.getName();
+    return this.mainThread.deliver(this.transactions.submitAsync(playerId, () -> {
+      int before = pointsAPI.look(playerId);
+      if (before < amount)
+        return CompletableFuture.completedFuture(false);
+      // Dispatch on the main thread, then verify the new balance back on a worker
+      return dispatchPointsCommand("points take " + playerName + " " + amount)
+        .thenApplyAsync(success -> {
+          int after = pointsAPI.look(playerId);
+          if (success && (after == before - amount)) {
+            plugin.getLogger().info("Successfully took " + amount + " points from " + playerName + " via command");
+            return true;
+          }
+          plugin.getLogger().warning("Failed to deduct points from " + playerName + ". Before: " + before + ", After: " + after);
+          return false;
+        }, this.transactions.workers());
+    }).exceptionally(e -> {
+      plugin.getLogger().log(Level.SEVERE, "Error deducting points for " + playerName, e);
+      return false;
+    }));
+  }
+  
+  private CompletableFuture<Boolean> executePointsCommand(String playerName, int amount) {
+    return dispatchPointsCommand("points take " + playerName + " " + amount);
+  }
+  
+  /**
+   * Queues a console command for the main thread. Every command queued before the next tick is
+   * dispatched in that same tick, and no thread waits for it; the returned future completes
+   * on the main thread with the dispatch result.
+   */
+  private CompletableFuture<Boolean> dispatchPointsCommand(String command) {
+    PendingCommand pending = new PendingCommand(command);
+    this.pendingCommands.add(pending);
+    if (this.commandDrainScheduled.compareAndSet(false, true))
       try {
-        int before = pointsAPI.look(player.getUniqueId());
-        if (before < amount) {
-          future.complete(false);
-          return;
-        }
-        boolean success = Bukkit.getScheduler().callSyncMethod(plugin, () ->
-          Bukkit.dispatchCommand(Bukkit.getConsoleSender(), "points take " + player.getName() + " " + amount)
-        ).get();
-        int after = pointsAPI.look(player.getUniqueId());
-        if (success && (after == before - amount)) {
-          plugin.getLogger().info("Successfully took " + amount + " points from " + player.getName() + " via command");
-          future.complete(true);
-        } else {
-          plugin.getLogger().warning("Failed to deduct points from " + player.getName() + ". Before: " + before + ", After: " + after);
-          future.complete(false);
-        }
+        Bukkit.getScheduler().runTask((Plugin)this.plugin, this::drainPendingCommands);
       } catch (Exception e) {
-        plugin.getLogger().log(Level.SEVERE, "Error deducting points for " + player.getName(), e);
-        future.complete(false);
-      }
-    });
-    return future;
+        // Plugin is disabling; nothing will run the queue any more
+        this.commandDrainScheduled.set(false);
+        failPendingCommands();
+      }  
+    return pending.result;
   }
   
-  private boolean executePointsCommand(String playerName, int amount) {
-    try {
-      // If we are already on the main server thread, execute the command directly to avoid
-      // deadlocking via callSyncMethod().  Otherwise, schedule a synchronous task and wait
-      // for it to complete.  This prevents the server from freezing when fallback
-      // commands are issued on the main thread.
-      if (Bukkit.isPrimaryThread()) {
-        String command = "points take " + playerName + " " + amount;
-        boolean success = Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command);
-        if (!success) {
-          this.plugin.getLogger().warning("Command execution failed: " + command);
-        }
-        return success;
-      } else {
-        return Bukkit.getScheduler().callSyncMethod((Plugin)this.plugin, () -> {
-          String command = "points take " + playerName + " " + amount;
-          try {
-            boolean success = Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command);
-            if (!success) {
-              this.plugin.getLogger().warning("Command execution failed: " + command);
-            }
-            return success;
-          } catch (Exception ex) {
-            this.plugin.getLogger().log(Level.SEVERE, "Error executing points command", ex);
-            return false;
-          }
-        }).get();
-      }
-    } catch (Exception e) {
-      this.plugin.getLogger().log(Level.SEVERE, "Error in command fallback for " + playerName, e);
-      return false;
-    }
+  private void drainPendingCommands() {
+    // Reset first so commands queued while draining schedule the next tick's batch
+    this.commandDrainScheduled.set(false);
+    PendingCommand pending;
+    while ((pending = this.pendingCommands.poll()) != null) {
+      try {
+        boolean success = Bukkit.dispatchCommand(Bukkit.getConsoleSender(), pending.command);
+        if (!success)
+          this.plugin.getLogger().warning("Command execution failed: " + pending.command); 
+        pending.result.complete(Boolean.valueOf(success));
+      } catch (Exception e) {
+        this.plugin.getLogger().log(Level.SEVERE, "Error executing points command", e);
+        pending.result.complete(Boolean.valueOf(false));
+      } 
+    } 
   }
   
-  private int getBalanceViaCommand(String playerName) {
-    try {
-      // If we are on the main thread, execute the command synchronously without callSyncMethod to avoid deadlock.
-      if (Bukkit.isPrimaryThread()) {
-        String command = "points look " + playerName;
-        boolean success = Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command);
-        if (!success) {
-          this.plugin.getLogger().warning("Balance command execution failed: " + command);
-          return 0;
-        }
-        // Attempt to retrieve the balance via the API if available.  If the API is
-        // unavailable or an error occurs, default to 0.
-        try {
-          if (this.pointsAPI != null) {
-            Player player = Bukkit.getPlayer(playerName);
-            if (player != null) {
-              int balance = this.pointsAPI.look(player.getUniqueId());
-              this.plugin.getLogger().info("Retrieved balance for " + playerName + " via API fallback: " + balance);
-              return balance;
-            }
-          }
-        } catch (Exception e) {
-          this.plugin.getLogger().warning("Could not get balance via API fallback for " + playerName + ": " + e.getMessage());
-        }
-        this.plugin.getLogger().warning("Could not determine balance for " + playerName + ", assuming 0");
-        return 0;
-      } else {
-        return Bukkit.getScheduler().callSyncMethod((Plugin)this.plugin, () -> {
-          String command = "points look " + playerName;
-          try {
-            boolean success = Bukkit.dispatchCommand(Bukkit.getConsoleSender(), command);
-            if (!success) {
-              this.plugin.getLogger().warning("Balance command execution failed: " + command);
-              return 0;
-            }
-            if (this.pointsAPI != null) {
-              Player player = Bukkit.getPlayer(playerName);
-              if (player != null) {
-                int balance = this.pointsAPI.look(player.getUniqueId());
-                this.plugin.getLogger().info("Retrieved balance for " + playerName + " via API fallback: " + balance);
-                return balance;
-              }
-            }
-            this.plugin.getLogger().warning("Could not determine balance for " + playerName + ", assuming 0");
-            return 0;
-          } catch (Exception e) {
-            this.plugin.getLogger().log(Level.SEVERE, "Error executing balance command", e);
-            return 0;
-          }
-        }).get();
-      }
-    } catch (Exception e) {
-      this.plugin.getLogger().log(Level.SEVERE, "Error in balance command fallback for " + playerName, e);
-      return 0;
-    }
+  private void failPendingCommands() {
+    PendingCommand pending;
+    while ((pending = this.pendingCommands.poll()) != null)
+      pending.result.complete(Boolean.valueOf(false)); 
   }
   
-  private static class BalanceCommandExecutor implements CommandExecutor {
-    private int capturedBalance;
+  private static final class CollectedCharge {
+    private final double amount;
     
-    private BalanceCommandExecutor() {
-      this.capturedBalance = 0;
+    private final String operation;
+    
+    private CollectedCharge(double amount, String operation) {
+      this.amount = amount;
+      this.operation = operation;
     }
+  }
+  
+  private static final class CachedBalance {
+    private final double balance;
+    
+    private final long observedAt;
     
-    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-      if (args.length > 0)
-        try {
-          this.capturedBalance = Integer.parseInt(args[0]);
-        } catch (NumberFormatException e) {
-          this.capturedBalance = 0;
-        }  
-      return true;
+    private CachedBalance(double balance, long observedAt) {
+      this.balance = balance;
+      this.observedAt = observedAt;
     }
+  }
+  
+  private static final class PendingCommand {
+    private final String command;
+    
+    private final CompletableFuture<Boolean> result = new CompletableFuture<>();
     
-    public int getCapturedBalance() {
-      return this.capturedBalance;
+    private PendingCommand(String command) {
+      this.command = command;
     }
   }
   
   public void resetApiStatus() {
-    this.apiWorking = true;
-    this.plugin.getLogger().info("PlayerPoints API status reset to working");
+    this.vaultBreaker.reset();
+    this.pointsApiBreaker.reset();
+    this.commandBreaker.reset();
+    this.plugin.getLogger().info("Economy circuit breakers reset to closed");
+  }
+  
+  public List<CircuitBreaker> getCircuitBreakers() {
+    return List.of(this.vaultBreaker, this.pointsApiBreaker, this.commandBreaker);
+  }
+  
+  public int getQueuedTransactionPlayers() {
+    return this.transactions.getQueuedPlayers();
   }
   
   public boolean testPlayerPointsIntegration() {
@@ -476,17 +681,16 @@ public class StorageEconomyManager {
       } 
       try {
         api.look(UUID.randomUUID());
-        this.apiWorking = true;
+        this.pointsApiBreaker.reset();
         this.plugin.getLogger().info("PlayerPoints API test passed - API is working");
         return true;
       } catch (Exception e) {
         this.plugin.getLogger().warning("PlayerPoints API test failed, will use command fallback: " + e.getMessage());
-        this.apiWorking = false;
+        this.pointsApiBreaker.onFailure(0L);
         return true;
       } 
     } catch (Exception e) {
       this.plugin.getLogger().log(Level.SEVERE, "PlayerPoints integration test failed", e);
-      this.apiWorking = false;
       return false;
     } 
   }
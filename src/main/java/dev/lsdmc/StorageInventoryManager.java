@@ -6,6 +6,7 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -17,6 +18,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.Material;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.plugin.Plugin;
@@ -74,7 +76,7 @@ public final class StorageInventoryManager {
       if (inv != null) {
         this.openInventories.put(admin.getUniqueId(), targetPlayerId);
         admin.openInventory(inv);
-        String targetName = Bukkit.getOfflinePlayer(targetPlayerId).getName();
+        String targetName = resolveName(targetPlayerId);
         admin.sendMessage(this.config.getMessage("storage-opened", 
               Map.of("target", (targetName != null) ? targetName : targetPlayerId.toString())));
       } else {
@@ -87,7 +89,11 @@ public final class StorageInventoryManager {
     } 
   }
   
-  private Inventory createInventory(Player viewer, UUID storageOwner, boolean isAdminView) {
+  /**
+   * Builds the storage GUI without opening it. Returns null, after logging why, if it could not
+   * be built.
+   */
+  public Inventory createInventory(Player viewer, UUID storageOwner, boolean isAdminView) {
     if (viewer == null || storageOwner == null)
       return null; 
     try {
@@ -100,7 +106,7 @@ public final class StorageInventoryManager {
       int rows = isDonor ? 2 : 1;
       int inventorySize = rows * 9;
       if (isAdminView) {
-        String ownerName = Bukkit.getOfflinePlayer(storageOwner).getName();
+        String ownerName = resolveName(storageOwner);
         titleComponent = this.config.getMessage("gui.admin-storage-title", 
             Map.of("target", (ownerName != null) ? ownerName : storageOwner.toString()));
       } else {
@@ -252,9 +258,6 @@ public final class StorageInventoryManager {
       if (highestRankOpt.isPresent()) {
         highestRank = highestRankOpt.get();
         availableDonorSlots = Math.min(highestRank.slots(), Constants.Slots.DONOR_SLOT_COUNT);
-        if (viewer.isOp() || viewer.hasPermission("storageslots.donor.*")) {
-          data.setCurrentDonorRank(highestRank.name());
-        } 
       } 
       int j;
       for (j = 0; j < Constants.Slots.DONOR_SLOT_COUNT; j++) {
@@ -392,8 +395,9 @@ public final class StorageInventoryManager {
       Player ownerPlayer = Bukkit.getPlayer(storageOwner);
       List<ItemStack> prohibitedItems = new ArrayList<>();
       for (int i = 0; i < inv.getSize(); i++) {
+        // Reserved slots are owned by a fee charge in flight until it settles
         if ((i < 9 || i > 10) && (i < 16 || i > 17))
-          if (data.hasSlotUnlocked(i)) {
+          if (data.hasSlotUnlocked(i) && !data.isSlotReserved(i)) {
             ItemStack item = inv.getItem(i);
             ItemStack currentItem = data.getItem(i);
             if (item != null && !item.getType().isAir()) {
@@ -418,21 +422,28 @@ public final class StorageInventoryManager {
             } 
           }  
       } 
-      if (!prohibitedItems.isEmpty() && ownerPlayer != null && ownerPlayer.isOnline())
-        Bukkit.getScheduler().runTask((Plugin)this.plugin, () -> {
-              for (ItemStack prohibitedItem : prohibitedItems) {
-                HashMap<Integer, ItemStack> leftover = ownerPlayer.getInventory().addItem(new ItemStack[] { prohibitedItem });
-                if (!leftover.isEmpty())
-                  for (ItemStack drop : leftover.values())
-                    ownerPlayer.getWorld().dropItemNaturally(ownerPlayer.getLocation(), drop);  
-              } 
-              ownerPlayer.sendMessage(this.config.getMessage("prohibited-item-returned", Map.of("count", String.valueOf(prohibitedItems.size()))));
-            }); 
+      if (!prohibitedItems.isEmpty() && ownerPlayer != null && ownerPlayer.isOnline()) {
+        Runnable returnItems = () -> {
+            for (ItemStack prohibitedItem : prohibitedItems) {
+              HashMap<Integer, ItemStack> leftover = ownerPlayer.getInventory().addItem(new ItemStack[] { prohibitedItem });
+              if (!leftover.isEmpty())
+                for (ItemStack drop : leftover.values())
+                  ownerPlayer.getWorld().dropItemNaturally(ownerPlayer.getLocation(), drop);  
+            } 
+            ownerPlayer.sendMessage(this.config.getMessage("prohibited-item-returned", Map.of("count", String.valueOf(prohibitedItems.size()))));
+          };
+        // No more ticks are coming once the plugin is disabling, so hand the items back right away
+        if (this.plugin.isEnabled()) {
+          Bukkit.getScheduler().runTask((Plugin)this.plugin, returnItems);
+        } else {
+          returnItems.run();
+        } 
+      } 
       if (hasChanges) {
-        this.dataManager.markDirty();
+        this.dataManager.markDirty(data.getPlayerId());
         if (this.config.logTransactions()) {
           String ownerName = (ownerPlayer != null) ? ownerPlayer.getName() : 
-            Bukkit.getOfflinePlayer(storageOwner).getName();
+            resolveName(storageOwner);
           this.plugin.getComponentLogger().info((Component)Component.text("Saved storage contents for " + (
                 (ownerName != null) ? ownerName : storageOwner.toString())));
         } 
@@ -471,11 +482,9 @@ public final class StorageInventoryManager {
           Player target = Bukkit.getPlayer(targetName);
           if (target != null)
             return target.getUniqueId(); 
-          for (UUID id : this.dataManager.getAllStoredPlayerIds()) {
-            String offlineName = Bukkit.getOfflinePlayer(id).getName();
-            if (targetName.equals(offlineName))
-              return id; 
-          } 
+          UUID indexed = this.dataManager.getNameIndex().findId(targetName);
+          if (indexed != null)
+            return indexed; 
         } 
       } catch (Exception e) {
         this.plugin.getComponentLogger().error(Component.text("Error parsing storage owner from title: " + e.getMessage())
@@ -484,6 +493,11 @@ public final class StorageInventoryManager {
     return viewer.getUniqueId();
   }
   
+  private String resolveName(UUID playerId) {
+    String indexed = this.dataManager.getNameIndex().findName(playerId);
+    return (indexed != null) ? indexed : Bukkit.getOfflinePlayer(playerId).getName();
+  }
+  
   public void closeStorage(Player player) {
     if (player == null)
       return; 
@@ -505,6 +519,8 @@ public final class StorageInventoryManager {
       Inventory topInventory = player.getOpenInventory().getTopInventory();
       if (topInventory == null)
         return; 
+      // Persist whatever the viewer has placed so far; re-rendering below reads from the data
+      saveInventoryContents(topInventory, storageOwner);
       PlayerStorageData data = this.dataManager.getPlayerData(storageOwner);
       boolean isDonor = !(!this.config.getHighestDonorRank(player).isPresent() && 
         !player.isOp() && 
@@ -532,7 +548,7 @@ public final class StorageInventoryManager {
         } else {
           newItem = this.config.createLockedSlotItem(i, null);
         } 
-        if (!itemsEqual(currentItem, newItem))
+        if (!Objects.equals(currentItem, newItem))
           topInventory.setItem(i, newItem); 
       } 
       if (isDonor && topInventory.getSize() >= 18) {
@@ -556,7 +572,7 @@ public final class StorageInventoryManager {
             } else if (!isAdminView) {
               newItem = createUnavailableDonorSlotItem(slotIndex, slotSpecificRank);
             } 
-            if (!itemsEqual(currentItem, newItem))
+            if (!Objects.equals(currentItem, newItem))
               topInventory.setItem(slotIndex, newItem); 
           } 
         } 
@@ -693,6 +709,43 @@ public final class StorageInventoryManager {
     } 
   }
   
+  /**
+   * Re-renders every open storage view after a configuration change. Only slots whose
+   * rendered item differs are updated, so viewers keep their cursor and untouched slots.
+   */
+  public void refreshOpenInventories() {
+    for (UUID viewerId : new ArrayList<>(this.openInventories.keySet())) {
+      Player viewer = Bukkit.getPlayer(viewerId);
+      if (viewer == null || !viewer.isOnline()) {
+        this.openInventories.remove(viewerId);
+        continue;
+      } 
+      refreshInventory(viewer);
+    } 
+  }
+  
+  /**
+   * Shutdown: saves what every viewer currently has in their open storage GUI and closes it.
+   * Returns one "viewer -> owner" entry per saved session.
+   */
+  public List<String> saveOpenSessions() {
+    List<String> saved = new ArrayList<>();
+    for (Map.Entry<UUID, UUID> entry : new ArrayList<>(this.openInventories.entrySet())) {
+      this.openInventories.remove(entry.getKey());
+      Player viewer = Bukkit.getPlayer(entry.getKey());
+      if (viewer == null || !viewer.isOnline())
+        continue; 
+      InventoryView view = viewer.getOpenInventory();
+      if (!isValidStorageInventory(view.getTitle()))
+        continue; 
+      saveInventoryContents(view.getTopInventory(), entry.getValue());
+      viewer.closeInventory();
+      String ownerName = entry.getKey().equals(entry.getValue()) ? viewer.getName() : resolveName(entry.getValue());
+      saved.add(viewer.getName() + " -> " + ((ownerName != null) ? ownerName : entry.getValue().toString()));
+    } 
+    return saved;
+  }
+  
   public void cleanup() {
     this.openInventories.clear();
   }
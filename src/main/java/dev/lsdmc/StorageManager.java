@@ -1,14 +1,23 @@
 package dev.lsdmc;
 
 import dev.lsdmc.utils.Constants;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.TextColor;
 import org.bukkit.Bukkit;
@@ -24,6 +33,8 @@ import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.inventory.InventoryDragEvent;
 // import org.bukkit.event.inventory.InventoryCreativeEvent; // not used
 import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.plugin.Plugin;
@@ -38,7 +49,10 @@ public class StorageManager implements Listener {
   
   private final StorageInventoryManager inventoryManager;
   
-  private final Map<UUID, Map<Integer, Long>> withdrawalCooldowns = new ConcurrentHashMap<>();
+  private final WithdrawalCooldowns withdrawalCooldowns = new WithdrawalCooldowns();
+  
+  // Fee charges in flight, by charge id; swept on the main thread once they exceed the timeout
+  private final Map<UUID, PlayerStorageData.WithdrawalReservation> pendingReservations = new ConcurrentHashMap<>();
   
   private long getWithdrawalCooldownMs() {
     return this.config.getWithdrawalCooldownMs();
@@ -49,7 +63,7 @@ public class StorageManager implements Listener {
       return false; 
     if (this.config.canBypassWithdrawalCooldown(player))
       return false; 
-    if (player.isOp() && !this.plugin.getConfig().getBoolean("withdrawal-cooldown.apply-to-ops", true))
+    if (player.isOp() && !this.config.applyWithdrawalCooldownToOps())
       return false; 
     return true;
   }
@@ -59,21 +73,13 @@ public class StorageManager implements Listener {
     this.config = config;
     this.dataManager = new StorageDataManager(plugin);
     this.inventoryManager = new StorageInventoryManager(plugin, config, this.dataManager);
-    setupAutoSave();
-  }
-  
-  private void setupAutoSave() {
-    if (!this.config.isAutoSaveEnabled())
-      return; 
-    (new BukkitRunnable() {
-        public void run() {
-          if (StorageManager.this.dataManager.isSavePending())
-            StorageManager.this.dataManager.saveData(); 
-        }
-      }).runTaskTimer((Plugin)this.plugin, this.config.getAutoSaveInterval() * 20L, this.config.getAutoSaveInterval() * 20L);
+    setupReservationSweeper();
+    setupCooldownSweeper();
   }
   
   public void openStorage(Player player) {
+    if (this.plugin.isShuttingDown())
+      return; 
     if (!this.plugin.getSafezoneManager().isInSafezone(player)) {
       player.sendMessage(this.config.getSafezoneMessage());
       return;
@@ -83,6 +89,8 @@ public class StorageManager implements Listener {
   }
   
   public void openPlayerStorage(Player admin, UUID targetPlayerId) {
+    if (this.plugin.isShuttingDown())
+      return; 
     if (!this.plugin.getSafezoneManager().isInSafezone(admin)) {
       admin.sendMessage(this.config.getSafezoneMessage());
       return;
@@ -90,36 +98,38 @@ public class StorageManager implements Listener {
     this.inventoryManager.openPlayerStorage(admin, targetPlayerId);
   }
   
-  public UUID findPlayerUUID(String name) {
-    if (name == null || name.trim().isEmpty() || name.length() > 16)
-      return null; 
-    String cleanName = name.trim().replaceAll("[^a-zA-Z0-9_]", "");
-    if (cleanName.isEmpty())
+  /**
+   * Resolves a player who is not online from the name index and the server's profile cache.
+   * Safe to call off the main thread.
+   */
+  public UUID findOfflinePlayerUUID(String name) {
+    String cleanName = cleanPlayerName(name);
+    if (cleanName == null)
       return null; 
-    Player target = Bukkit.getPlayer(cleanName);
-    if (target != null)
-      return target.getUniqueId(); 
-    for (UUID id : this.dataManager.getAllStoredPlayerIds()) {
-      String offlineName = Bukkit.getOfflinePlayer(id).getName();
-      if (cleanName.equalsIgnoreCase(offlineName))
-        return id; 
+    UUID indexed = this.dataManager.getNameIndex().findId(cleanName);
+    if (indexed != null)
+      return indexed; 
+    // Never fall back to a blocking profile lookup; only accept what the server already knows
+    OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayerIfCached(cleanName);
+    if (offlinePlayer != null && offlinePlayer.hasPlayedBefore() && offlinePlayer.getName() != null) {
+      this.dataManager.getNameIndex().record(offlinePlayer.getUniqueId(), offlinePlayer.getName(), offlinePlayer.getLastSeen());
+      return offlinePlayer.getUniqueId();
     } 
-    OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(cleanName);
-    if (offlinePlayer.hasPlayedBefore())
-      return offlinePlayer.getUniqueId(); 
     return null;
   }
   
-  public void giveSlot(Player admin, String targetName, int slot) {
+  private String cleanPlayerName(String name) {
+    if (name == null || name.trim().isEmpty() || name.length() > 16)
+      return null; 
+    String cleanName = name.trim().replaceAll("[^a-zA-Z0-9_]", "");
+    return cleanName.isEmpty() ? null : cleanName;
+  }
+  
+  public void giveSlot(Player admin, UUID targetId, String targetName, int slot) {
     if (!this.config.isValidSlot(slot)) {
       admin.sendMessage(this.config.getMessage("invalid-slot"));
       return;
     } 
-    UUID targetId = findPlayerUUID(targetName);
-    if (targetId == null) {
-      admin.sendMessage(this.config.getMessage("player-not-found"));
-      return;
-    } 
     PlayerStorageData data = this.dataManager.getPlayerData(targetId);
     if (data.hasSlotUnlocked(slot)) {
       admin.sendMessage(this.config.getMessage("slot-already-owned", Map.of(
@@ -128,22 +138,17 @@ public class StorageManager implements Listener {
       return;
     } 
     data.unlockSlot(slot);
-    this.dataManager.markDirty();
+    this.dataManager.markDirty(data.getPlayerId());
     admin.sendMessage(this.config.getMessage("slot-given", Map.of(
             "player", targetName, 
             "slot", String.valueOf(slot + 1))));
   }
   
-  public void removeSlot(Player admin, String targetName, int slot) {
+  public void removeSlot(Player admin, UUID targetId, String targetName, int slot) {
     if (!this.config.isValidSlot(slot)) {
       admin.sendMessage(this.config.getMessage("invalid-slot"));
       return;
     } 
-    UUID targetId = findPlayerUUID(targetName);
-    if (targetId == null) {
-      admin.sendMessage(this.config.getMessage("player-not-found"));
-      return;
-    } 
     PlayerStorageData data = this.dataManager.getPlayerData(targetId);
     if (!data.hasSlotUnlocked(slot)) {
       admin.sendMessage(this.config.getMessage("slot-not-owned", Map.of(
@@ -158,18 +163,58 @@ public class StorageManager implements Listener {
       return;
     } 
     data.lockSlot(slot);
-    this.dataManager.markDirty();
+    this.dataManager.markDirty(data.getPlayerId());
     admin.sendMessage(this.config.getMessage("slot-removed", Map.of(
             "player", targetName, 
             "slot", String.valueOf(slot + 1))));
   }
   
-  public void listSlots(Player admin, String targetName) {
-    UUID targetId = findPlayerUUID(targetName);
-    if (targetId == null) {
-      admin.sendMessage(this.config.getMessage("player-not-found"));
+  /**
+   * Lists the stored stacks of {@code material}, largest first, from the item index. With
+   * {@code modelData} set, only items with that custom model data are listed.
+   */
+  public void findStoredItems(Player admin, Material material, Integer modelData, int page) {
+    List<ItemIndex.Hit> matching = new ArrayList<>();
+    for (ItemIndex.Hit hit : this.dataManager.getItemIndex().find(material)) {
+      ItemStack item = getStoredItem(hit);
+      if (item != null && (modelData == null || hasCustomModelData(item, modelData.intValue())))
+        matching.add(hit); 
+    } 
+    String materialName = material.name() + ((modelData != null) ? (":" + modelData) : "");
+    if (matching.isEmpty()) {
+      admin.sendMessage(this.config.getMessage("find-no-results", Map.of(
+              "material", materialName)));
       return;
     } 
+    matching.sort(Comparator.comparingInt((ItemIndex.Hit hit) -> getStoredItem(hit).getAmount()).reversed());
+    int pageSize = 10;
+    int pages = (matching.size() + pageSize - 1) / pageSize;
+    int currentPage = Math.max(1, Math.min(page, pages));
+    admin.sendMessage(this.config.getMessage("find-header", Map.of(
+            "material", materialName, 
+            "total", String.valueOf(matching.size()), 
+            "page", String.valueOf(currentPage), 
+            "pages", String.valueOf(pages))));
+    PlayerNameIndex names = this.dataManager.getNameIndex();
+    for (ItemIndex.Hit hit : matching.subList((currentPage - 1) * pageSize, Math.min(currentPage * pageSize, matching.size()))) {
+      String playerName = names.findName(hit.getPlayerId());
+      admin.sendMessage(this.config.getMessage("find-entry", Map.of(
+              "player", (playerName != null) ? playerName : hit.getPlayerId().toString(), 
+              "slot", String.valueOf(hit.getSlot() + 1), 
+              "amount", String.valueOf(getStoredItem(hit).getAmount()))));
+    } 
+  }
+  
+  private ItemStack getStoredItem(ItemIndex.Hit hit) {
+    return this.dataManager.getPlayerData(hit.getPlayerId()).getItem(hit.getSlot());
+  }
+  
+  @SuppressWarnings("deprecation")
+  private static boolean hasCustomModelData(ItemStack item, int modelData) {
+    return item.hasItemMeta() && item.getItemMeta().hasCustomModelData() && item.getItemMeta().getCustomModelData() == modelData;
+  }
+  
+  public void listSlots(Player admin, UUID targetId, String targetName) {
     PlayerStorageData data = this.dataManager.getPlayerData(targetId);
     Set<Integer> slots = data.getUnlockedSlots();
     if (slots.isEmpty()) {
@@ -177,16 +222,32 @@ public class StorageManager implements Listener {
               "player", targetName)));
       return;
     } 
-    admin.sendMessage(this.config.getMessage("slots-list-header", Map.of(
-            "player", targetName)));
-    for (Iterator<Integer> iterator = slots.iterator(); iterator.hasNext(); ) {
-      int slot = ((Integer)iterator.next()).intValue();
-      ItemStack item = data.getItem(slot);
-      String status = (item != null) ? item.getType().toString() : "Empty";
-      admin.sendMessage(this.config.getMessage("slots-list-format", Map.of(
-              "slot", String.valueOf(slot + 1), 
-              "status", status)));
+    Set<String> requiredRanks = new HashSet<>();
+    for (Integer slot : slots) {
+      String rank = this.config.getRequiredRank(slot.intValue());
+      if (rank != null && !rank.isEmpty())
+        requiredRanks.add(rank); 
     } 
+    // Offline targets are loaded from LuckPerms, so this works whether or not they are online
+    this.plugin.getPermissionManager().getMissingRanks(targetId, requiredRanks).whenComplete((missingRanks, error) -> {
+          if (!admin.isOnline())
+            return; 
+          if (error != null)
+            this.plugin.getLogger().warning("Could not load ranks for " + targetName + ": " + error.getMessage()); 
+          admin.sendMessage(this.config.getMessage("slots-list-header", Map.of(
+                  "player", targetName)));
+          for (Iterator<Integer> iterator = slots.iterator(); iterator.hasNext(); ) {
+            int slot = ((Integer)iterator.next()).intValue();
+            ItemStack item = data.getItem(slot);
+            String status = (item != null) ? item.getType().toString() : "Empty";
+            String rank = this.config.getRequiredRank(slot);
+            if (missingRanks != null && rank != null && missingRanks.contains(rank))
+              status = status + ", missing " + this.config.getRankDisplayName(rank); 
+            admin.sendMessage(this.config.getMessage("slots-list-format", Map.of(
+                    "slot", String.valueOf(slot + 1), 
+                    "status", status)));
+          } 
+        });
   }
   
   public void purchaseSlot(Player player, int slot) {
@@ -223,26 +284,29 @@ public class StorageManager implements Listener {
     double cost = this.config.getSlotCost(slot);
     if (this.config.logTransactions())
       this.plugin.getLogger().info("Player " + player.getName() + " attempting to purchase slot " + (slot + 1) + " for " + cost + " " + this.plugin.getEconomyManager().getCurrencyName("slot-purchase"));
+    Runnable reportInsufficientFunds = () -> withBalance(player, "slot-purchase", balance -> {
+          Map<String, String> placeholders = Map.of(
+            "cost", this.plugin.getEconomyManager().formatCurrency(cost, "slot-purchase"),
+            "currency", this.plugin.getEconomyManager().getCurrencyName("slot-purchase"),
+            "balance", this.plugin.getEconomyManager().formatCurrency(balance, "slot-purchase")
+          );
+          player.sendMessage(this.config.getMessage("insufficient-funds", placeholders)); 
+        });
+    if (this.plugin.getEconomyManager().isClearlyUnaffordable(player, cost, "slot-purchase")) {
+      reportInsufficientFunds.run();
+      return;
+    } 
     this.plugin.getEconomyManager().takeMoney(player, cost, "slot-purchase").thenAccept(success -> {
           if (this.config.logTransactions())
             this.plugin.getLogger().info("Player " + player.getName() + " slot purchase result: " + String.valueOf(success)); 
           if (!success.booleanValue() || !player.isOnline()) {
-            if (player.isOnline()) {
-              // Get the actual balance for the error message
-              this.plugin.getEconomyManager().getBalance(player, "slot-purchase").thenAccept(balance -> {
-                Map<String, String> placeholders = Map.of(
-                  "cost", this.plugin.getEconomyManager().formatCurrency(cost, "slot-purchase"),
-                  "currency", this.plugin.getEconomyManager().getCurrencyName("slot-purchase"),
-                  "balance", this.plugin.getEconomyManager().formatCurrency(balance, "slot-purchase")
-                );
-                player.sendMessage(this.config.getMessage("insufficient-funds", placeholders)); 
-              });
-            }
+            if (player.isOnline())
+              reportInsufficientFunds.run(); 
             return;
           } 
-          Bukkit.getScheduler().runTask((Plugin)this.plugin, () -> {
+          runOnMainThread(() -> {
             data.unlockSlot(slot);
-            this.dataManager.markDirty();
+            this.dataManager.markDirty(data.getPlayerId());
             Map<String, String> placeholders = Map.of(
               "slot", String.valueOf(slot + 1),
               "cost", this.plugin.getEconomyManager().formatCurrency(cost, "slot-purchase"),
@@ -252,7 +316,7 @@ public class StorageManager implements Listener {
             if (this.inventoryManager.hasStorageOpen(player))
               this.inventoryManager.updateSlotInOpenInventory(player, slot);
           });
-        });
+        }).exceptionally(error -> handleEconomyError(player, "slot purchase", error));
   }
   
   private boolean isDonorSlot(Player player, int slot) {
@@ -303,26 +367,29 @@ public class StorageManager implements Listener {
     if (this.config.logTransactions())
       this.plugin.getLogger().info("Player " + player.getName() + " attempting to purchase donor slot " + (slot + 1) + " for " + 
           cost + " " + this.plugin.getEconomyManager().getCurrencyName("donor-slots") + " (base: " + baseCost + ", multiplier: " + this.config.getDonorSlotCostMultiplier() + ")");
+    Runnable reportInsufficientFunds = () -> withBalance(player, "donor-slots", balance -> {
+          Map<String, String> placeholders = Map.of(
+            "cost", String.valueOf((int)cost),
+            "currency", this.plugin.getEconomyManager().getCurrencyName("donor-slots"),
+            "balance", this.plugin.getEconomyManager().formatCurrency(balance, "donor-slots")
+          );
+          player.sendMessage(this.config.getMessage("insufficient-funds", placeholders)); 
+        });
+    if (this.plugin.getEconomyManager().isClearlyUnaffordable(player, cost, "donor-slots")) {
+      reportInsufficientFunds.run();
+      return;
+    } 
     this.plugin.getEconomyManager().takeMoney(player, cost, "donor-slots").thenAccept(success -> {
           if (this.config.logTransactions())
             this.plugin.getLogger().info("Player " + player.getName() + " donor slot purchase result: " + String.valueOf(success)); 
           if (!success.booleanValue() || !player.isOnline()) {
-            if (player.isOnline()) {
-              // Get the actual balance for the error message
-              this.plugin.getEconomyManager().getBalance(player, "donor-slots").thenAccept(balance -> {
-                Map<String, String> placeholders = Map.of(
-                  "cost", String.valueOf((int)cost),
-                  "currency", this.plugin.getEconomyManager().getCurrencyName("donor-slots"),
-                  "balance", this.plugin.getEconomyManager().formatCurrency(balance, "donor-slots")
-                );
-                player.sendMessage(this.config.getMessage("insufficient-funds", placeholders)); 
-              });
-            }
+            if (player.isOnline())
+              reportInsufficientFunds.run(); 
             return;
           } 
-          Bukkit.getScheduler().runTask((Plugin)this.plugin, () -> {
+          runOnMainThread(() -> {
             data.unlockSlot(slot);
-            this.dataManager.markDirty();
+            this.dataManager.markDirty(data.getPlayerId());
             data.setCurrentDonorRank(donorRankToUse.name());
             Map<String, String> placeholders = Map.of(
               "slot", String.valueOf(slot + 1),
@@ -333,7 +400,19 @@ public class StorageManager implements Listener {
             if (this.inventoryManager.hasStorageOpen(player))
               this.inventoryManager.updateSlotInOpenInventory(player, slot);
           });
-        });
+        }).exceptionally(error -> handleEconomyError(player, "donor slot purchase", error));
+  }
+  
+  /**
+   * Runs {@code task} on the main thread: inline when already there or when the plugin is
+   * disabling (no further ticks will run), otherwise on the next tick.
+   */
+  private void runOnMainThread(Runnable task) {
+    if (Bukkit.isPrimaryThread() || !this.plugin.isEnabled()) {
+      task.run();
+    } else {
+      Bukkit.getScheduler().runTask((Plugin)this.plugin, task);
+    } 
   }
   
   @EventHandler
@@ -344,6 +423,11 @@ public class StorageManager implements Listener {
     String title = event.getView().getTitle();
     if (!this.inventoryManager.isValidStorageInventory(title))
       return; 
+    // Storage GUIs are being saved and closed; no new purchase or withdrawal may start
+    if (this.plugin.isShuttingDown()) {
+      event.setCancelled(true);
+      return;
+    } 
     // Extra safety: only process clicks when our storage GUI is actually tracked as open
     if (!this.inventoryManager.hasStorageOpen(player))
       return;
@@ -370,6 +454,11 @@ public class StorageManager implements Listener {
         event.setCancelled(true);
         return;
       } 
+      if (data.isSlotReserved(slot)) {
+        // A fee for this slot is still being charged
+        event.setCancelled(true);
+        return;
+      } 
       if (cursorItem != null && !cursorItem.getType().isAir()) {
         if (this.config.isProhibitedItem(cursorItem)) {
           event.setCancelled(true);
@@ -423,15 +512,14 @@ public class StorageManager implements Listener {
         if (hasPersistedItem && isPureWithdrawal) {
           boolean applyCooldown = shouldApplyWithdrawalCooldown(player);
           if (applyCooldown) {
-            clearExpiredCooldowns(player);
-            if (isOnWithdrawalCooldown(player, slot)) {
+            long remainingMs = this.withdrawalCooldowns.remainingMs(player.getUniqueId(), slot, System.currentTimeMillis());
+            if (remainingMs > 0L) {
               event.setCancelled(true);
-              long remainingMs = ((Long)((Map)this.withdrawalCooldowns.get(player.getUniqueId())).get(Integer.valueOf(slot))).longValue() - System.currentTimeMillis();
               double remainingSeconds = remainingMs / 1000.0D;
               player.sendMessage(Component.text("Please wait " + String.format("%.1f", new Object[] { Double.valueOf(remainingSeconds) }) + " seconds before withdrawing from this slot.").color((TextColor)Constants.Colors.ERROR));
               return;
             }
-            setWithdrawalCooldown(player, slot);
+            this.withdrawalCooldowns.start(player.getUniqueId(), slot, System.currentTimeMillis(), getWithdrawalCooldownMs());
           }
 
           boolean isDonorSlot = Constants.Slots.isDonorSlot(slot);
@@ -479,14 +567,13 @@ public class StorageManager implements Listener {
           // Apply withdrawal fee for the item being taken out
           boolean applyCooldown = shouldApplyWithdrawalCooldown(player);
           if (applyCooldown) {
-            clearExpiredCooldowns(player);
-            if (isOnWithdrawalCooldown(player, slot)) {
-              long remainingMs = ((Long)((Map)this.withdrawalCooldowns.get(player.getUniqueId())).get(Integer.valueOf(slot))).longValue() - System.currentTimeMillis();
+            long remainingMs = this.withdrawalCooldowns.remainingMs(player.getUniqueId(), slot, System.currentTimeMillis());
+            if (remainingMs > 0L) {
               double remainingSeconds = remainingMs / 1000.0D;
               player.sendMessage(Component.text("Please wait " + String.format("%.1f", new Object[] { Double.valueOf(remainingSeconds) }) + " seconds before withdrawing from this slot.").color((TextColor)Constants.Colors.ERROR));
               return;
             }
-            setWithdrawalCooldown(player, slot);
+            this.withdrawalCooldowns.start(player.getUniqueId(), slot, System.currentTimeMillis(), getWithdrawalCooldownMs());
           }
 
           boolean isDonorSlot = Constants.Slots.isDonorSlot(slot);
@@ -522,15 +609,14 @@ public class StorageManager implements Listener {
         event.getAction() == InventoryAction.PICKUP_ALL) {
         boolean applyCooldown = shouldApplyWithdrawalCooldown(player);
         if (applyCooldown) {
-          clearExpiredCooldowns(player);
-          if (isOnWithdrawalCooldown(player, slot)) {
+          long remainingMs = this.withdrawalCooldowns.remainingMs(player.getUniqueId(), slot, System.currentTimeMillis());
+          if (remainingMs > 0L) {
             event.setCancelled(true);
-            long remainingMs = ((Long)((Map)this.withdrawalCooldowns.get(player.getUniqueId())).get(Integer.valueOf(slot))).longValue() - System.currentTimeMillis();
             double remainingSeconds = remainingMs / 1000.0D;
             player.sendMessage(Component.text("Please wait " + String.format("%.1f", new Object[] { Double.valueOf(remainingSeconds) }) + " seconds before withdrawing from this slot.").color((TextColor)Constants.Colors.ERROR));
             return;
           } 
-          setWithdrawalCooldown(player, slot);
+          this.withdrawalCooldowns.start(player.getUniqueId(), slot, System.currentTimeMillis(), getWithdrawalCooldownMs());
         } 
         boolean isDonorSlot = Constants.Slots.isDonorSlot(slot);
         
@@ -623,31 +709,6 @@ public class StorageManager implements Listener {
     return false;
   }
   
-  private boolean isOnWithdrawalCooldown(Player player, int slot) {
-    Map<Integer, Long> playerCooldowns = this.withdrawalCooldowns.get(player.getUniqueId());
-    if (playerCooldowns == null)
-      return false; 
-    Long cooldownEnd = playerCooldowns.get(Integer.valueOf(slot));
-    if (cooldownEnd == null)
-      return false; 
-    return (System.currentTimeMillis() < cooldownEnd.longValue());
-  }
-  
-  private void setWithdrawalCooldown(Player player, int slot) {
-    ((Map<Integer, Long>)this.withdrawalCooldowns.computeIfAbsent(player.getUniqueId(), k -> new ConcurrentHashMap<>()))
-      .put(Integer.valueOf(slot), Long.valueOf(System.currentTimeMillis() + getWithdrawalCooldownMs()));
-  }
-  
-  private void clearExpiredCooldowns(Player player) {
-    Map<Integer, Long> playerCooldowns = this.withdrawalCooldowns.get(player.getUniqueId());
-    if (playerCooldowns != null) {
-      long currentTime = System.currentTimeMillis();
-      playerCooldowns.entrySet().removeIf(entry -> (((Long)entry.getValue()).longValue() < currentTime));
-      if (playerCooldowns.isEmpty())
-        this.withdrawalCooldowns.remove(player.getUniqueId()); 
-    } 
-  }
-  
   private void handleItemWithdrawal(Player player, int slot, ItemStack item, PlayerStorageData data) {
     if (item == null || item.getType().isAir())
       return; 
@@ -701,42 +762,34 @@ public class StorageManager implements Listener {
     if (usePoints) {
       if (this.config.logTransactions())
         this.plugin.getLogger().info("Player " + player.getName() + " executing withdrawal with " + (int)fee + " " + this.plugin.getEconomyManager().getCurrencyName("withdrawal-fees")); 
-      this.plugin.getEconomyManager().takeMoney(player, fee, "withdrawal-fees").thenAccept(success -> {
-            if (this.config.logTransactions())
-              this.plugin.getLogger().info("Player " + player.getName() + " withdrawal result: " + String.valueOf(success)); 
-            if (!success.booleanValue() || !player.isOnline()) {
-              if (player.isOnline()) {
-                this.plugin.getEconomyManager().getBalance(player, "withdrawal-fees").thenAccept(balance -> {
-                  Map<String, String> placeholders = Map.of(
-                    "points", String.valueOf((int)fee),
-                    "currency", this.plugin.getEconomyManager().getCurrencyName("withdrawal-fees"),
-                    "balance", this.plugin.getEconomyManager().formatCurrency(balance, "withdrawal-fees")
-                  );
-                  player.sendMessage(this.config.getMessage("insufficient-points", placeholders)); 
-                });
-              }
-              return;
-            } 
-            completeWithdrawal(player, slot, item, data);
+      Runnable reportInsufficientPoints = () -> withBalance(player, "withdrawal-fees", balance -> {
+            Map<String, String> placeholders = Map.of(
+              "points", String.valueOf((int)fee),
+              "currency", this.plugin.getEconomyManager().getCurrencyName("withdrawal-fees"),
+              "balance", this.plugin.getEconomyManager().formatCurrency(balance, "withdrawal-fees")
+            );
+            player.sendMessage(this.config.getMessage("insufficient-points", placeholders)); 
           });
+      if (this.plugin.getEconomyManager().isClearlyUnaffordable(player, fee, "withdrawal-fees")) {
+        reportInsufficientPoints.run();
+        return;
+      } 
+      chargeReservedSlot(player, data, slot, fee, "withdrawal fee", reportInsufficientPoints, 
+          () -> completeWithdrawal(player, slot, item, data));
     } else {
       if (this.config.logTransactions())
         this.plugin.getLogger().info("Player " + player.getName() + " executing withdrawal with " + fee + " " + this.plugin.getEconomyManager().getCurrencyName("withdrawal-fees")); 
-      this.plugin.getEconomyManager().takeMoney(player, fee, "withdrawal-fees").thenAccept(success -> {
-            if (this.config.logTransactions())
-              this.plugin.getLogger().info("Player " + player.getName() + " money withdrawal result: " + String.valueOf(success)); 
-            if (!success.booleanValue() || !player.isOnline()) {
-              if (player.isOnline()) {
-                Map<String, String> placeholders = Map.of(
-                  "fee", this.plugin.getEconomyManager().formatCurrency(fee, "withdrawal-fees"),
-                  "currency", this.plugin.getEconomyManager().getCurrencyName("withdrawal-fees")
-                );
-                player.sendMessage(this.config.getMessage("insufficient-withdrawal-funds", placeholders)); 
-              }
-              return;
-            } 
-            completeWithdrawal(player, slot, item, data);
-          });
+      Map<String, String> placeholders = Map.of(
+        "fee", this.plugin.getEconomyManager().formatCurrency(fee, "withdrawal-fees"),
+        "currency", this.plugin.getEconomyManager().getCurrencyName("withdrawal-fees")
+      );
+      if (this.plugin.getEconomyManager().isClearlyUnaffordable(player, fee, "withdrawal-fees")) {
+        player.sendMessage(this.config.getMessage("insufficient-withdrawal-funds", placeholders));
+        return;
+      } 
+      chargeReservedSlot(player, data, slot, fee, "withdrawal fee", 
+          () -> player.sendMessage(this.config.getMessage("insufficient-withdrawal-funds", placeholders)), 
+          () -> completeWithdrawal(player, slot, item, data));
     } 
   }
   
@@ -756,7 +809,7 @@ public class StorageManager implements Listener {
     
     // Remove item from storage BEFORE giving it to player
     data.setItem(slot, null);
-    this.dataManager.markDirty();
+    this.dataManager.markDirty(data.getPlayerId());
     
     // Give the ORIGINAL item (without withdrawal lore) to the player
     // Check if inventory is full and handle overflow properly
@@ -826,12 +879,12 @@ public class StorageManager implements Listener {
     String title = event.getView().getTitle();
     if (!this.inventoryManager.isValidStorageInventory(title))
       return; 
-    if (!this.plugin.getSafezoneManager().isInSafezone(player)) {
+    // Storage GUIs are being saved and closed; no new purchase or withdrawal may start
+    if (this.plugin.isShuttingDown()) {
       event.setCancelled(true);
-      player.closeInventory();
-      player.sendMessage(this.config.getSafezoneMessage());
       return;
     } 
+    // Leaving the safezone closes the GUI (see StorageSessionTracker), so no check is needed here
     UUID storageOwner = this.inventoryManager.getStorageOwner(title, player);
     PlayerStorageData data = this.dataManager.getPlayerData(storageOwner);
     for (Iterator<Integer> iterator = event.getRawSlots().iterator(); iterator.hasNext(); ) {
@@ -859,7 +912,7 @@ public class StorageManager implements Listener {
       } 
     } 
     if (!event.isCancelled())
-      this.dataManager.markDirty(); 
+      this.dataManager.markDirty(data.getPlayerId()); 
   }
   
   @EventHandler
@@ -877,10 +930,52 @@ public class StorageManager implements Listener {
     this.inventoryManager.closeStorage(player);
   }
   
+  @EventHandler
+  public void onPlayerJoin(PlayerJoinEvent event) {
+    Player player = event.getPlayer();
+    this.dataManager.getNameIndex().record(player.getUniqueId(), player.getName(), System.currentTimeMillis());
+    refreshPlayerRanks(player);
+  }
+  
+  @EventHandler
+  public void onPlayerQuit(PlayerQuitEvent event) {
+    this.dataManager.getNameIndex().record(event.getPlayer().getUniqueId(), event.getPlayer().getName(), System.currentTimeMillis());
+    this.config.invalidatePlayerCache(event.getPlayer().getUniqueId());
+    this.plugin.getEconomyManager().forgetBalances(event.getPlayer().getUniqueId());
+  }
+  
+  /**
+   * Re-resolves the player's donor rank and withdrawal fee and keeps the persisted donor rank in sync.
+   * Must be called on the main thread.
+   */
+  public void refreshPlayerRanks(Player player) {
+    if (player == null || !player.isOnline())
+      return; 
+    this.config.invalidateWithdrawalFee(player.getUniqueId());
+    Optional<StorageConfig.DonorRank> highestRank = this.config.refreshHighestDonorRank(player);
+    String rankName = highestRank.map(StorageConfig.DonorRank::name).orElse(null);
+    // Persistent donor slots keep the last known rank after the permission goes away
+    if (rankName == null && this.config.doDonorSlotsPersist())
+      return; 
+    PlayerStorageData data = this.dataManager.getPlayerData(player.getUniqueId());
+    if (!Objects.equals(rankName, data.getCurrentDonorRank())) {
+      data.setCurrentDonorRank(rankName);
+      this.dataManager.markDirty(data.getPlayerId());
+    } 
+  }
+  
   public void saveAllData() {
     this.dataManager.saveData();
   }
   
+  /**
+   * Saves pending changes spread over several ticks; use {@link #saveAllData()} when the data
+   * must be on disk before returning.
+   */
+  public void queueSave() {
+    this.dataManager.requestSave();
+  }
+  
   public void resetAllStorage() {
     this.dataManager.resetAllData();
   }
@@ -955,39 +1050,155 @@ public class StorageManager implements Listener {
       return;
     
     String currencyName = this.plugin.getEconomyManager().getCurrencyName("withdrawal-fees");
+    Map<String, String> placeholders = usePoints ? 
+      Map.of("points", String.valueOf(fee), "currency", currencyName) :
+      Map.of("money", String.valueOf(fee), "currency", currencyName);
+    String insufficientKey = usePoints ? "insufficient-points" : "insufficient-money";
     
-    // Check if player has enough balance
-    CompletableFuture<Double> balanceCheck = this.plugin.getEconomyManager().getBalance(player, "withdrawal-fees");
-    balanceCheck.thenAccept(balance -> {
-      if (balance < fee) {
-        Map<String, String> placeholders = usePoints ? 
-          Map.of("points", String.valueOf(fee), "currency", currencyName) :
-          Map.of("money", String.valueOf(fee), "currency", currencyName);
-        String messageKey = usePoints ? "insufficient-points" : "insufficient-money";
-        player.sendMessage(this.config.getMessage(messageKey, placeholders));
-        return;
-      }
+    // Reject from the last known balance; takeMoney checks the live balance itself
+    if (this.plugin.getEconomyManager().isClearlyUnaffordable(player, fee, "withdrawal-fees")) {
+      player.sendMessage(this.config.getMessage(insufficientKey, placeholders));
+      return;
+    }
+    
+    // Take the fee
+    chargeReservedSlot(player, data, slot, fee, "swap fee", () -> {
+      boolean insufficient = this.plugin.getEconomyManager().isClearlyUnaffordable(player, fee, "withdrawal-fees");
+      player.sendMessage(this.config.getMessage(insufficient ? insufficientKey : "payment-failed", placeholders));
+    }, () -> {
+      // Complete the swap
+      completeItemSwap(player, slot, storageItem, playerItem, data);
       
-      // Take the fee
-      CompletableFuture<Boolean> feePayment = this.plugin.getEconomyManager().takeMoney(player, fee, "withdrawal-fees");
-      feePayment.thenAccept(success -> {
-        if (!success) {
-          player.sendMessage(this.config.getMessage("payment-failed"));
-          return;
-        }
-        
-        // Complete the swap
-        completeItemSwap(player, slot, storageItem, playerItem, data);
-        
-        // Send fee message
-        Map<String, String> feePlaceholders = usePoints ? 
-          Map.of("points", String.valueOf(fee), "currency", currencyName) :
-          Map.of("money", String.valueOf(fee), "currency", currencyName);
-        player.sendMessage(this.config.getMessage("withdrawal-fee-paid", feePlaceholders));
-      });
+      // Send fee message
+      player.sendMessage(this.config.getMessage("withdrawal-fee-paid", placeholders));
     });
   }
   
+  /**
+   * Two-phase fee charge for a stored item. The slot is reserved before the fee is taken; once
+   * the charge settles the reservation is either committed through {@code commit} or rolled
+   * back with a refund, if the player left, the slot changed or the sweeper expired it while
+   * the charge was in flight. Runs entirely on the main thread without waiting on the economy.
+   */
+  private void chargeReservedSlot(Player player, PlayerStorageData data, int slot, double fee, String action, Runnable declined, Runnable commit) {
+    PlayerStorageData.WithdrawalReservation reservation = data.reserveSlot(slot, fee, System.currentTimeMillis());
+    if (reservation == null)
+      return; 
+    UUID chargeId = reservation.getId();
+    this.pendingReservations.put(chargeId, reservation);
+    this.plugin.getEconomyManager().takeMoney(player, fee, "withdrawal-fees", chargeId).thenAccept(success -> {
+          this.pendingReservations.remove(chargeId);
+          boolean stillReserved = data.releaseReservation(reservation);
+          if (this.config.logTransactions())
+            this.plugin.getLogger().info("Player " + player.getName() + " " + action + " result: " + success + " (charge " + chargeId + ")"); 
+          if (!success.booleanValue()) {
+            this.plugin.getEconomyManager().forgetCharge(chargeId);
+            if (player.isOnline())
+              declined.run(); 
+            return;
+          } 
+          if (!stillReserved || !player.isOnline() || !reservation.matches(data.getItem(slot))) {
+            String reason = !stillReserved ? "reservation expired" : (!player.isOnline() ? "player went offline" : "slot contents changed");
+            rollBackReservation(player, reservation, reason);
+            return;
+          } 
+          this.plugin.getEconomyManager().forgetCharge(chargeId);
+          commit.run();
+        }).exceptionally(error -> {
+          // The reservation stays until the sweeper releases it, so the item cannot be taken twice;
+          // a late success is refunded by the economy manager, never committed
+          this.plugin.getLogger().warning("Charge " + chargeId + " for " + player.getName() + " slot " + (slot + 1) + " did not settle; the slot stays reserved until it expires");
+          return handleEconomyError(player, action, error);
+        });
+  }
+  
+  private void rollBackReservation(Player player, PlayerStorageData.WithdrawalReservation reservation, String reason) {
+    UUID chargeId = reservation.getId();
+    this.plugin.getLogger().warning("Rolling back withdrawal from slot " + (reservation.getSlot() + 1) + " for " + player.getName() + 
+        " (" + reason + "), refunding charge " + chargeId);
+    this.plugin.getEconomyManager().refund((OfflinePlayer)player, chargeId).whenComplete((refunded, error) -> {
+          this.plugin.getEconomyManager().forgetCharge(chargeId);
+          if (error == null && refunded.booleanValue() && player.isOnline()) {
+            Map<String, String> placeholders = Map.of(
+              "fee", this.plugin.getEconomyManager().formatCurrency(reservation.getFee(), "withdrawal-fees"),
+              "currency", this.plugin.getEconomyManager().getCurrencyName("withdrawal-fees")
+            );
+            player.sendMessage(this.config.getMessage("withdrawal-refunded", placeholders));
+          } 
+        });
+  }
+  
+  private void setupReservationSweeper() {
+    (new BukkitRunnable() {
+        public void run() {
+          StorageManager.this.sweepExpiredReservations();
+        }
+      }).runTaskTimer((Plugin)this.plugin, 20L, 20L);
+  }
+  
+  /**
+   * Drops cooldown entries that have fully expired, including those of players who left,
+   * so the table only holds players who withdrew within the last cooldown period.
+   */
+  private void setupCooldownSweeper() {
+    (new BukkitRunnable() {
+        public void run() {
+          StorageManager.this.withdrawalCooldowns.sweep(System.currentTimeMillis());
+        }
+      }).runTaskTimer((Plugin)this.plugin, 600L, 600L);
+  }
+  
+  /**
+   * Releases reservations whose charge never settled. The item never left storage, so releasing
+   * simply makes the slot usable again. A charge that still goes through afterwards is refunded
+   * by the economy manager when the provider reports it.
+   */
+  private void sweepExpiredReservations() {
+    if (this.pendingReservations.isEmpty())
+      return; 
+    long cutoff = System.currentTimeMillis() - this.config.getReservationTimeoutMs();
+    Iterator<PlayerStorageData.WithdrawalReservation> iterator = this.pendingReservations.values().iterator();
+    while (iterator.hasNext()) {
+      PlayerStorageData.WithdrawalReservation reservation = iterator.next();
+      if (reservation.getCreatedAt() > cutoff)
+        continue; 
+      iterator.remove();
+      if (this.dataManager.getPlayerData(reservation.getOwnerId()).releaseReservation(reservation))
+        this.plugin.getLogger().warning("Released expired reservation of slot " + (reservation.getSlot() + 1) + " for " + 
+            reservation.getOwnerId() + " (charge " + reservation.getId() + ")"); 
+      this.plugin.getEconomyManager().forgetCharge(reservation.getId());
+    } 
+  }
+  
+  /**
+   * Supplies the balance for an insufficient-funds message, preferring the value the failed
+   * charge just observed over another economy round trip.
+   */
+  private void withBalance(Player player, String operation, Consumer<Double> action) {
+    OptionalDouble cached = this.plugin.getEconomyManager().getCachedBalance(player, operation);
+    if (cached.isPresent()) {
+      action.accept(Double.valueOf(cached.getAsDouble()));
+      return;
+    } 
+    this.plugin.getEconomyManager().getBalance(player, operation).thenAccept(action);
+  }
+  
+  /**
+   * Reports an economy call that failed or timed out. A timed-out charge may still go through
+   * later; the economy manager refunds it then, so nothing is delivered for it here.
+   */
+  private Void handleEconomyError(Player player, String action, Throwable error) {
+    Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+    if (cause instanceof TimeoutException) {
+      this.plugin.getLogger().warning("Economy " + action + " for " + player.getName() + " timed out; it is refunded if the provider still completes it");
+    } else {
+      this.plugin.getLogger().warning("Economy " + action + " for " + player.getName() + " did not complete (" + cause.getMessage() + ")");
+    } 
+    if (player.isOnline())
+      player.sendMessage(this.config.getMessage("errors.economy-transaction-failed")); 
+    return null;
+  }
+  
   /**
    * Completes an item swap (withdraws storage item and deposits player item)
    */
@@ -1020,7 +1231,7 @@ public class StorageManager implements Listener {
     // Store the player's item in the slot (remove any lore first)
     ItemStack cleanPlayerItem = this.inventoryManager.removeWithdrawalLore(playerItem.clone());
     data.setItem(slot, cleanPlayerItem);
-    this.dataManager.markDirty();
+    this.dataManager.markDirty(data.getPlayerId());
     
     // Send swap message
     Map<String, String> placeholders = Map.of("slot", String.valueOf(slot + 1));
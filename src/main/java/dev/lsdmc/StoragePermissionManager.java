@@ -1,18 +1,84 @@
 package dev.lsdmc;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import net.luckperms.api.LuckPerms;
+import net.luckperms.api.event.EventBus;
+import net.luckperms.api.event.node.NodeAddEvent;
+import net.luckperms.api.event.node.NodeMutateEvent;
+import net.luckperms.api.event.node.NodeRemoveEvent;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
 import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.node.Node;
+import net.luckperms.api.node.matcher.NodeMatcher;
+import org.bukkit.Bukkit;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
 public class StoragePermissionManager {
-
+  private final StorageSlots plugin;
   
   private final LuckPerms luckPerms;
   
+  private final MainThreadHandoff mainThread;
+  
+  // Players with a rank refresh already queued for the next tick, so event bursts coalesce
+  private final Set<UUID> pendingRankRefreshes = ConcurrentHashMap.newKeySet();
+  
+  // Users loaded from storage for offline lookups, least recently used first; guarded by itself
+  private final LinkedHashMap<UUID, CachedUser> loadedUsers = new LinkedHashMap<>(16, 0.75F, true);
+  
   public StoragePermissionManager(StorageSlots plugin, LuckPerms luckPerms) {
+    this.plugin = plugin;
+    this.mainThread = plugin.getMainThread();
     this.luckPerms = luckPerms;
+    subscribeToLuckPermsEvents();
+  }
+  
+  private void subscribeToLuckPermsEvents() {
+    EventBus eventBus = this.luckPerms.getEventBus();
+    eventBus.subscribe(this.plugin, UserDataRecalculateEvent.class, this::onUserDataRecalculate);
+    eventBus.subscribe(this.plugin, NodeAddEvent.class, this::onNodeMutate);
+    eventBus.subscribe(this.plugin, NodeRemoveEvent.class, this::onNodeMutate);
+  }
+  
+  private void onUserDataRecalculate(UserDataRecalculateEvent event) {
+    scheduleRankRefresh(event.getUser().getUniqueId());
+  }
+  
+  private void onNodeMutate(NodeMutateEvent event) {
+    // Group changes reach us as a recalculation for every affected user
+    if (!event.isUser())
+      return; 
+    scheduleRankRefresh(((User)event.getTarget()).getUniqueId());
+  }
+  
+  private void scheduleRankRefresh(UUID playerId) {
+    // LuckPerms events fire off the main thread; drop anything derived from the old permissions right away
+    StorageConfig config = this.plugin.getConfigManager();
+    if (config != null)
+      config.invalidatePlayerCache(playerId); 
+    invalidateUser(playerId);
+    if (!this.plugin.isEnabled() || !this.pendingRankRefreshes.add(playerId))
+      return; 
+    Bukkit.getScheduler().runTask(this.plugin, () -> {
+          this.pendingRankRefreshes.remove(playerId);
+          Player player = Bukkit.getPlayer(playerId);
+          StorageManager storageManager = this.plugin.getStorageManager();
+          if (player != null && storageManager != null) {
+            storageManager.refreshPlayerRanks(player);
+            // A new rank may make the next slot available; notify right away instead of on a timer
+            this.plugin.checkPlayerForNewSlots(player);
+          } 
+        });
   }
   
   public boolean hasPermission(CommandSender sender, String permission) {
@@ -28,15 +94,145 @@ public class StoragePermissionManager {
   }
   
   public CompletableFuture<Boolean> checkRankRequirement(Player player, String requiredRank) {
+    return CompletableFuture.completedFuture(Boolean.valueOf(meetsRank(player, requiredRank)));
+  }
+  
+  /**
+   * Checks a rank requirement for any player. Online players are answered from their live
+   * permissions; offline players are loaded from LuckPerms storage. Completes on the main thread.
+   */
+  public CompletableFuture<Boolean> checkRankRequirement(UUID playerId, String requiredRank) {
+    Player online = Bukkit.getPlayer(playerId);
+    if (online != null)
+      return checkRankRequirement(online, requiredRank); 
+    return this.mainThread.deliver(loadUserAsync(playerId).thenApply(user -> Boolean.valueOf(meetsRank(user, requiredRank))));
+  }
+  
+  /**
+   * Batch form of {@link #checkRankRequirement(UUID, String)} for admin commands touching many
+   * players. All offline users load in parallel and the result is delivered in a single main-thread hop.
+   */
+  public CompletableFuture<Map<UUID, Boolean>> checkRankRequirement(Collection<UUID> playerIds, String requiredRank) {
+    Map<UUID, Boolean> results = new ConcurrentHashMap<>();
+    CompletableFuture<?>[] lookups = new CompletableFuture<?>[playerIds.size()];
+    int index = 0;
+    for (UUID playerId : playerIds) {
+      Player online = Bukkit.getPlayer(playerId);
+      if (online != null) {
+        results.put(playerId, Boolean.valueOf(meetsRank(online, requiredRank)));
+        lookups[index++] = CompletableFuture.completedFuture(null);
+      } else {
+        lookups[index++] = loadUserAsync(playerId).thenAccept(user -> results.put(playerId, Boolean.valueOf(meetsRank(user, requiredRank))));
+      } 
+    } 
+    return this.mainThread.deliver(CompletableFuture.allOf(lookups).thenApply(ignored -> new HashMap<>(results)));
+  }
+  
+  /**
+   * Returns which of {@code ranks} the player does not meet, loading offline players from storage.
+   * Completes on the main thread.
+   */
+  public CompletableFuture<Set<String>> getMissingRanks(UUID playerId, Collection<String> ranks) {
+    Player online = Bukkit.getPlayer(playerId);
+    if (online != null) {
+      Set<String> missing = new LinkedHashSet<>();
+      for (String rank : ranks) {
+        if (!meetsRank(online, rank))
+          missing.add(rank); 
+      } 
+      return CompletableFuture.completedFuture(missing);
+    } 
+    return this.mainThread.deliver(loadUserAsync(playerId).thenApply(user -> {
+            Set<String> missing = new LinkedHashSet<>();
+            for (String rank : ranks) {
+              if (!meetsRank(user, rank))
+                missing.add(rank); 
+            } 
+            return missing;
+          }));
+  }
+  
+  private CompletableFuture<User> loadUserAsync(UUID playerId) {
+    UserManager userManager = this.luckPerms.getUserManager();
+    if (Bukkit.getPlayer(playerId) != null) {
+      User online = userManager.getUser(playerId);
+      if (online != null)
+        return CompletableFuture.completedFuture(online); 
+    } 
+    long now = System.currentTimeMillis();
+    StorageConfig config = this.plugin.getConfigManager();
+    long ttlMs = (config != null) ? config.getUserCacheTtlMs() : 60000L;
+    int maxEntries = (config != null) ? config.getUserCacheMaxEntries() : 1000;
+    synchronized (this.loadedUsers) {
+      CachedUser cached = this.loadedUsers.get(playerId);
+      if (cached != null && now - cached.loadedAt < ttlMs && !cached.user.isCompletedExceptionally())
+        return cached.user; 
+      CompletableFuture<User> loading = userManager.loadUser(playerId);
+      this.loadedUsers.put(playerId, new CachedUser(loading, now));
+      while (this.loadedUsers.size() > maxEntries)
+        this.loadedUsers.remove(this.loadedUsers.keySet().iterator().next()); 
+      return loading;
+    } 
+  }
+  
+  /**
+   * Finds every player, online or offline, who has {@code nodeKey} granted directly or through a
+   * group they are directly in that grants it directly. Only one level of group inheritance is
+   * followed, and negated or expired nodes do not count. Searches LuckPerms storage, so it completes
+   * off the main thread.
+   */
+  public CompletableFuture<Set<UUID>> findPlayersWithNode(String nodeKey) {
+    UserManager userManager = this.luckPerms.getUserManager();
+    CompletableFuture<Map<UUID, Collection<Node>>> direct = userManager.searchAll(NodeMatcher.key(nodeKey));
+    CompletableFuture<Map<String, Collection<Node>>> groups = this.luckPerms.getGroupManager().searchAll(NodeMatcher.key(nodeKey));
+    return direct.thenCombine(groups, (users, groupHits) -> {
+          Set<UUID> found = ConcurrentHashMap.newKeySet();
+          found.addAll(granted(users));
+          Set<String> granting = granted(groupHits);
+          CompletableFuture<?>[] members = new CompletableFuture<?>[granting.size()];
+          int index = 0;
+          for (String group : granting)
+            members[index++] = userManager.searchAll(NodeMatcher.key("group." + group)).thenAccept(hits -> found.addAll(granted(hits))); 
+          return CompletableFuture.allOf(members).thenApply(ignored -> (Set<UUID>)new LinkedHashSet<>(found));
+        }).thenCompose(future -> future);
+  }
+  
+  // NodeMatcher.key matches the key whatever its value, so drop holders whose nodes are all false or expired
+  private static <K> Set<K> granted(Map<K, Collection<Node>> hits) {
+    Set<K> holders = new LinkedHashSet<>();
+    for (Map.Entry<K, Collection<Node>> entry : hits.entrySet()) {
+      for (Node node : entry.getValue()) {
+        if (node.getValue() && !node.hasExpired()) {
+          holders.add(entry.getKey());
+          break;
+        } 
+      } 
+    } 
+    return holders;
+  }
+  
+  public void invalidateUser(UUID playerId) {
+    synchronized (this.loadedUsers) {
+      this.loadedUsers.remove(playerId);
+    } 
+  }
+  
+  private boolean meetsRank(Player player, String requiredRank) {
     if (player.hasPermission("storageslots.bypass.rank"))
-      return CompletableFuture.completedFuture(Boolean.valueOf(true)); 
+      return true; 
+    if (requiredRank == null || requiredRank.isEmpty())
+      return true; 
+    return player.hasPermission(requiredRank);
+  }
+  
+  private boolean meetsRank(User user, String requiredRank) {
     if (requiredRank == null || requiredRank.isEmpty())
-      return CompletableFuture.completedFuture(Boolean.valueOf(true)); 
-    User user = this.luckPerms.getUserManager().getUser(player.getUniqueId());
+      return true; 
     if (user == null)
-      return CompletableFuture.completedFuture(Boolean.valueOf(false)); 
-    return CompletableFuture.completedFuture(
-        Boolean.valueOf(user.getCachedData().getPermissionData().checkPermission(requiredRank).asBoolean()));
+      return false; 
+    if (user.getCachedData().getPermissionData().checkPermission("storageslots.bypass.rank").asBoolean())
+      return true; 
+    return user.getCachedData().getPermissionData().checkPermission(requiredRank).asBoolean();
   }
   
   public User getUser(Player player) {
@@ -58,4 +254,15 @@ public class StoragePermissionManager {
   public boolean canBypassRank(Player player) {
     return player.hasPermission("storageslots.bypass.rank");
   }
+  
+  private static final class CachedUser {
+    private final CompletableFuture<User> user;
+    
+    private final long loadedAt;
+    
+    private CachedUser(CompletableFuture<User> user, long loadedAt) {
+      this.user = user;
+      this.loadedAt = loadedAt;
+    }
+  }
 }
@@ -0,0 +1,52 @@
+package dev.lsdmc;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+
+/**
+ * Keeps open storage GUIs inside the safezone. Only players with an open storage session are
+ * looked at, and only when they cross into another block or teleport; the safezone is checked at
+ * the destination and the GUI is closed as soon as it is outside. Click and drag handlers can
+ * therefore trust that an open session is in a safezone.
+ */
+public final class StorageSessionTracker implements Listener {
+  private final StorageConfig config;
+
+  private final StorageInventoryManager inventoryManager;
+
+  private final SafezoneManager safezoneManager;
+
+  public StorageSessionTracker(StorageConfig config, StorageInventoryManager inventoryManager, SafezoneManager safezoneManager) {
+    this.config = config;
+    this.inventoryManager = inventoryManager;
+    this.safezoneManager = safezoneManager;
+  }
+
+  // Registered after SafezoneManager so its cache invalidation for the move has already run
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void onPlayerMove(PlayerMoveEvent event) {
+    if (!event.hasChangedBlock())
+      return;
+    check(event.getPlayer(), event.getTo());
+  }
+
+  @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+  public void onPlayerTeleport(PlayerTeleportEvent event) {
+    check(event.getPlayer(), event.getTo());
+  }
+
+  private void check(Player player, Location destination) {
+    if (!this.inventoryManager.hasStorageOpen(player))
+      return;
+    if (this.safezoneManager.isInSafezone(player, destination))
+      return;
+    // Closing fires InventoryCloseEvent, which saves the contents and ends the session
+    player.closeInventory();
+    player.sendMessage(this.config.getSafezoneMessage());
+  }
+}
@@ -15,14 +15,18 @@ import org.bukkit.Bukkit;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.PluginCommand;
 import org.bukkit.command.TabCompleter;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.java.JavaPlugin;
 
 public final class StorageSlots extends JavaPlugin {
+  private static final long REMINDER_INTERVAL_MS = 7200000L;
+  
   private StorageManager storageManager;
   
   private StorageConfig configManager;
@@ -39,10 +43,32 @@ public final class StorageSlots extends JavaPlugin {
   
   private LuckPerms luckPerms;
   
+  private StorageConfigWatcher configWatcher;
+  
+  // Pending two-hour slot reminders; main thread only
+  private TimingWheel reminderWheel;
+  
+  private TickBudgetScheduler workScheduler;
+  
+  private AdminCommandPipeline adminPipeline;
+  
+  private SaveScheduler saveScheduler;
+  
+  private volatile boolean shuttingDown;
+  
+  // Created at the start of onEnable so storage and economy can report to it while they load
+  private volatile StorageStats storageStats;
+  
+  private final MainThreadHandoff mainThread = new MainThreadHandoff((Plugin)this);
+  
   private static StorageSlots instance;
   
   public void onEnable() {
     instance = this;
+    // The same instance may be enabled again after a disable; start from a clean state
+    this.shuttingDown = false;
+    // Counters are rebuilt as storage loads, so carrying them over would count everything twice
+    this.storageStats = new StorageStats();
     getComponentLogger().info(Component.text("Starting StorageSlots...")
         .color((TextColor)Constants.Colors.INFO));
     try {
@@ -55,7 +81,9 @@ public final class StorageSlots extends JavaPlugin {
       registerCommands();
       verifyComponents();
       scheduleAutoSave();
+      scheduleStatsExport();
       scheduleNotificationSystem();
+      startConfigWatcher();
       getComponentLogger().info(Component.text("StorageSlots enabled successfully!")
           .color((TextColor)Constants.Colors.SUCCESS));
     } catch (Exception e) {
@@ -191,9 +219,12 @@ public final class StorageSlots extends JavaPlugin {
   
   private void initializeManagers() {
     try {
+      this.workScheduler = new TickBudgetScheduler((Plugin)this, this.configManager.getTickBudgetMicros());
+      this.workScheduler.start();
       this.storageManager = new StorageManager(this, this.configManager);
       this.safezoneManager = new SafezoneManager(this, this.configManager);
       this.inventoryManager = this.storageManager.getInventoryManager();
+      this.adminPipeline = new AdminCommandPipeline(this, this.storageManager, this.configManager);
       
       // Create fallback economy manager if no economy system is available
       if (this.economyManager == null) {
@@ -227,6 +258,8 @@ public final class StorageSlots extends JavaPlugin {
   private void registerEvents() {
     try {
       getServer().getPluginManager().registerEvents(this.storageManager, (Plugin)this);
+      getServer().getPluginManager().registerEvents(this.safezoneManager, (Plugin)this);
+      getServer().getPluginManager().registerEvents(new StorageSessionTracker(this.configManager, this.inventoryManager, this.safezoneManager), (Plugin)this);
       getServer().getPluginManager().registerEvents(new Listener() {
             @EventHandler
             public void onPlayerJoin(PlayerJoinEvent event) {
@@ -238,6 +271,11 @@ public final class StorageSlots extends JavaPlugin {
                     } 
                   }, 100L);
             }
+            
+            @EventHandler
+            public void onPlayerQuit(PlayerQuitEvent event) {
+              StorageSlots.this.cancelReminder(event.getPlayer().getUniqueId());
+            }
           }, (Plugin)this);
       getComponentLogger().info(Component.text("Event listeners registered!")
           .color((TextColor)Constants.Colors.SUCCESS));
@@ -260,10 +298,12 @@ public final class StorageSlots extends JavaPlugin {
       registerCommand("removeslot", this.commandExecutor);
       registerCommand("giveslot", this.commandExecutor);
       registerCommand("listslots", this.commandExecutor);
+      registerCommand("bulkslot", this.commandExecutor);
       registerCommand("togglecooldown", this.commandExecutor);
       registerCommand("testeconomy", this.commandExecutor);
       registerCommand("testfallback", this.commandExecutor);
       registerCommand("resetapi", this.commandExecutor);
+      registerCommand("economystatus", this.commandExecutor);
       registerCommand("testnotifications", this.commandExecutor);
       registerCommand("debugsafezone", this.commandExecutor);
       getComponentLogger().info(Component.text("Commands registered successfully!")
@@ -313,19 +353,11 @@ public final class StorageSlots extends JavaPlugin {
   }
   
   private void scheduleAutoSave() {
-    if (!this.configManager.isAutoSaveEnabled())
-      return; 
     try {
-      long intervalTicks = this.configManager.getAutoSaveInterval() * 20L;
-      getServer().getScheduler().runTaskTimer((Plugin)this, () -> {
-            try {
-              if (this.storageManager != null)
-                this.storageManager.saveAllData(); 
-            } catch (Exception e) {
-              getComponentLogger().error(Component.text("Error during auto-save: " + e.getMessage()).color((TextColor)Constants.Colors.ERROR));
-            } 
-          }, intervalTicks, intervalTicks);
-      getComponentLogger().info(Component.text("Auto-save scheduled every " + this.configManager.getAutoSaveInterval() + " seconds")
+      // Always running so auto-save can be switched on by a reload; it checks auto-save.enabled itself
+      this.saveScheduler = new SaveScheduler(this, this.storageManager.getDataManager(), this.configManager);
+      this.saveScheduler.start();
+      getComponentLogger().info(Component.text("Auto-save scheduled, flushing at most " + this.configManager.getAutoSaveInterval() + " seconds after a change")
           .color((TextColor)Constants.Colors.INFO));
     } catch (Exception e) {
       getComponentLogger().error(Component.text("Failed to schedule auto-save: " + e.getMessage())
@@ -333,16 +365,40 @@ public final class StorageSlots extends JavaPlugin {
     } 
   }
   
+  private void scheduleStatsExport() {
+    long intervalSeconds = this.configManager.getStatsExportInterval();
+    if (intervalSeconds <= 0L)
+      return; 
+    getServer().getScheduler().runTaskTimer((Plugin)this, () -> {
+          // Snapshot on the main thread, where the storage counters are written
+          String json = this.storageStats.toJson();
+          this.storageManager.getDataManager().writeStats(json);
+        }, intervalSeconds * 20L, intervalSeconds * 20L);
+  }
+  
+  /**
+   * New-slot notifications are event driven: a player is checked when they join and whenever
+   * LuckPerms changes their permissions. Only pending two-hour reminders are timed, through a
+   * timing wheel that is advanced once a second and touches nothing but the reminders that are due.
+   */
   private void scheduleNotificationSystem() {
     try {
+      this.reminderWheel = new TimingWheel(1000L, 8192, System.currentTimeMillis());
       getServer().getScheduler().runTaskTimer((Plugin)this, () -> {
             try {
-              checkForNewSlotNotifications();
+              this.reminderWheel.advance(System.currentTimeMillis(), playerId -> this.workScheduler.submit(() -> onReminderDue(playerId)));
             } catch (Exception e) {
               getComponentLogger().error(Component.text("Error during notification check: " + e.getMessage()).color((TextColor)Constants.Colors.ERROR));
             } 
-          }, 1200L, 1200L);
-      getComponentLogger().info(Component.text("Notification system scheduled every 1 minute")
+          }, 20L, 20L);
+      // Players already online after a plugin reload will not fire a join event
+      getServer().getScheduler().runTaskLater((Plugin)this, () -> {
+            for (Player player : getServer().getOnlinePlayers()) {
+              UUID playerId = player.getUniqueId();
+              this.workScheduler.submit(() -> onReminderDue(playerId));
+            } 
+          }, 100L);
+      getComponentLogger().info(Component.text("Notification system ready (event driven, reminders every 2 hours)")
           .color((TextColor)Constants.Colors.INFO));
     } catch (Exception e) {
       getComponentLogger().error(Component.text("Failed to schedule notification system: " + e.getMessage())
@@ -350,29 +406,33 @@ public final class StorageSlots extends JavaPlugin {
     } 
   }
   
-  private void checkForNewSlotNotifications() {
-    for (Player player : getServer().getOnlinePlayers()) {
-      try {
-        checkPlayerForNewSlots(player);
-      } catch (Exception e) {
-        getComponentLogger().error(Component.text("Error checking notifications for " + player.getName() + ": " + e.getMessage())
-            .color((TextColor)Constants.Colors.ERROR));
-      } 
+  private void onReminderDue(UUID playerId) {
+    Player player = Bukkit.getPlayer(playerId);
+    if (player == null)
+      return; 
+    try {
+      checkPlayerForNewSlots(player);
+    } catch (Exception e) {
+      getComponentLogger().error(Component.text("Error checking notifications for " + player.getName() + ": " + e.getMessage())
+          .color((TextColor)Constants.Colors.ERROR));
     } 
   }
   
+  private void cancelReminder(UUID playerId) {
+    if (this.reminderWheel != null)
+      this.reminderWheel.cancel(playerId); 
+  }
+  
   public void checkPlayerForNewSlots(Player player) {
     if (this.storageManager == null || this.configManager == null)
       return; 
     PlayerStorageData data = this.storageManager.getDataManager().getPlayerData(player.getUniqueId());
     int nextSlot = findNextUnlockableSlot(player, data);
-    if (nextSlot == -1)
-      return; 
-    String requiredRank = this.configManager.getRequiredRank(nextSlot);
-    if (requiredRank == null)
-      return; 
-    if (!this.configManager.hasRankRequirement(player, requiredRank))
-      return; 
+    String requiredRank = (nextSlot == -1) ? null : this.configManager.getRequiredRank(nextSlot);
+    if (requiredRank == null || !this.configManager.hasRankRequirement(player, requiredRank)) {
+      cancelReminder(player.getUniqueId());
+      return;
+    } 
     long currentTime = System.currentTimeMillis();
     boolean isNewRank = !requiredRank.equals(data.getLastNotifiedRank());
     if (isNewRank) {
@@ -383,17 +443,22 @@ public final class StorageSlots extends JavaPlugin {
       data.setLastNotifiedRank(requiredRank);
       data.setSeenNewSlotNotification(false);
       data.setLastReminderTime(currentTime);
-      this.storageManager.getDataManager().markDirty();
+      this.storageManager.getDataManager().markDirty(data.getPlayerId());
     } else if (!data.hasSeenNewSlotNotification()) {
       long timeSinceLastReminder = currentTime - data.getLastReminderTime();
-      if (timeSinceLastReminder >= 7200000L) {
+      if (timeSinceLastReminder >= REMINDER_INTERVAL_MS) {
         if (this.configManager.logTransactions())
           getLogger().info("Player " + player.getName() + " hasn't opened storage in 2+ hours - sending reminder for slot " + nextSlot + 1); 
         sendSlotReminder(player, nextSlot + 1);
         data.setLastReminderTime(currentTime);
-        this.storageManager.getDataManager().markDirty();
+        this.storageManager.getDataManager().markDirty(data.getPlayerId());
       } 
     } 
+    if (data.hasSeenNewSlotNotification()) {
+      cancelReminder(player.getUniqueId());
+    } else if (this.reminderWheel != null) {
+      this.reminderWheel.schedule(player.getUniqueId(), data.getLastReminderTime() + REMINDER_INTERVAL_MS);
+    } 
   }
   
   private int findNextUnlockableSlot(Player player, PlayerStorageData data) {
@@ -420,24 +485,36 @@ public final class StorageSlots extends JavaPlugin {
       return; 
     PlayerStorageData data = this.storageManager.getDataManager().getPlayerData(player.getUniqueId());
     data.setSeenNewSlotNotification(true);
-    this.storageManager.getDataManager().markDirty();
+    this.storageManager.getDataManager().markDirty(data.getPlayerId());
+    cancelReminder(player.getUniqueId());
   }
   
   public void onDisable() {
     getComponentLogger().info(Component.text("StorageSlots is shutting down...")
         .color((TextColor)Constants.Colors.INFO));
+    // From here on clicks in storage GUIs are cancelled and no storage can be opened
+    this.shuttingDown = true;
+    // isEnabled() is already false, so the scheduler won't run result callbacks; the shutdown sequence runs them
+    this.mainThread.hold();
     try {
+      if (this.configWatcher != null)
+        this.configWatcher.stop(); 
+      // Queued jobs are dropped; the final save below covers any auto-save still in progress
+      if (this.saveScheduler != null)
+        this.saveScheduler.stop(); 
+      if (this.workScheduler != null)
+        this.workScheduler.stop(); 
+      if (this.adminPipeline != null)
+        this.adminPipeline.shutdown(); 
       if (this.storageManager != null) {
-        this.storageManager.saveAllData();
-        getComponentLogger().info(Component.text("Storage data saved!")
-            .color((TextColor)Constants.Colors.SUCCESS));
+        new ShutdownSequence(this, this.configManager).run();
+        this.storageManager.getDataManager().shutdown();
       } 
+      this.mainThread.release();
       if (this.inventoryManager != null)
         this.inventoryManager.cleanup(); 
-      for (Player player : Bukkit.getOnlinePlayers()) {
-        if (this.inventoryManager != null && this.inventoryManager.hasStorageOpen(player))
-          this.inventoryManager.closeStorage(player); 
-      } 
+      if (this.economyManager != null)
+        this.economyManager.shutdown(); 
       getServer().getScheduler().cancelTasks((Plugin)this);
       getComponentLogger().info(Component.text("StorageSlots disabled successfully!")
           .color((TextColor)Constants.Colors.SUCCESS));
@@ -469,10 +546,34 @@ public final class StorageSlots extends JavaPlugin {
     return this.luckPerms;
   }
   
+  public TickBudgetScheduler getWorkScheduler() {
+    return this.workScheduler;
+  }
+  
   public SafezoneManager getSafezoneManager() {
     return this.safezoneManager;
   }
   
+  public SaveScheduler getSaveScheduler() {
+    return this.saveScheduler;
+  }
+  
+  public boolean isShuttingDown() {
+    return this.shuttingDown;
+  }
+  
+  public StorageStats getStorageStats() {
+    return this.storageStats;
+  }
+  
+  public MainThreadHandoff getMainThread() {
+    return this.mainThread;
+  }
+  
+  public AdminCommandPipeline getAdminPipeline() {
+    return this.adminPipeline;
+  }
+  
   public StorageManager getStorageManager() {
     return this.storageManager;
   }
@@ -485,8 +586,7 @@ public final class StorageSlots extends JavaPlugin {
     try {
       if (this.configManager != null) {
         this.configManager.reload();
-        // Ensure all config-dependent data is refreshed
-        this.configManager.loadConfiguration();
+        onConfigurationReloaded();
         getComponentLogger().info(Component.text("Configuration reloaded!")
             .color((TextColor)Constants.Colors.SUCCESS));
       } 
@@ -497,6 +597,46 @@ public final class StorageSlots extends JavaPlugin {
     } 
   }
   
+  private void startConfigWatcher() {
+    if (!this.configManager.isHotReloadEnabled())
+      return; 
+    this.configWatcher = new StorageConfigWatcher(this, this.configManager.getHotReloadDebounceMs());
+    this.configWatcher.start();
+  }
+  
+  /**
+   * Swaps in config and messages parsed by the file watcher. Runs on the main thread; skipped
+   * when the files are unchanged, e.g. after the plugin itself saved config.yml.
+   */
+  void applyConfigurationSnapshot(FileConfiguration newConfig, FileConfiguration newMessages, String configText, String messagesText) {
+    if (this.configManager == null)
+      return; 
+    if (configText.equals(this.configManager.getConfig().saveToString()) && 
+      messagesText.equals(this.configManager.getMessages().saveToString()))
+      return; 
+    try {
+      this.configManager.applySnapshot(newConfig, newMessages);
+      onConfigurationReloaded();
+      getComponentLogger().info(Component.text("Detected changes to config.yml/messages.yml - configuration reloaded!")
+          .color((TextColor)Constants.Colors.SUCCESS));
+    } catch (Exception e) {
+      getComponentLogger().error(Component.text("Failed to apply changed configuration: " + e.getMessage())
+          .color((TextColor)Constants.Colors.ERROR));
+    } 
+  }
+  
+  private void onConfigurationReloaded() {
+    if (this.workScheduler != null)
+      this.workScheduler.setBudgetMicros(this.configManager.getTickBudgetMicros()); 
+    if (this.safezoneManager != null)
+      this.safezoneManager.reload(); 
+    if (this.storageManager != null)
+      for (Player player : Bukkit.getOnlinePlayers())
+        this.storageManager.refreshPlayerRanks(player);  
+    if (this.inventoryManager != null)
+      this.inventoryManager.refreshOpenInventories(); 
+  }
+  
   public boolean isPlayerInSafezone(Player player) {
     return (this.safezoneManager != null && this.safezoneManager.isInSafezone(player));
   }
@@ -519,7 +659,7 @@ public final class StorageSlots extends JavaPlugin {
       return CompletableFuture.completedFuture(Boolean.valueOf(false)); 
     return CompletableFuture.supplyAsync(() -> {
           try {
-            this.storageManager.giveSlot(player, player.getName(), slot);
+            this.storageManager.giveSlot(player, player.getUniqueId(), player.getName(), slot);
             return Boolean.valueOf(true);
           } catch (Exception e) {
             getComponentLogger().error(Component.text("Error giving slot to player: " + e.getMessage()).color((TextColor)Constants.Colors.ERROR));
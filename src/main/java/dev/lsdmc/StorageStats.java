@@ -0,0 +1,205 @@
+package dev.lsdmc;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Running totals over all storage: slots unlocked per slot number, donor slot usage, stored
+ * stacks and items per material, and economy volume per operation. {@link PlayerStorageData}
+ * and {@link StorageEconomyManager} report each change as it happens, so every update is O(1)
+ * and reading the numbers never touches player data.
+ *
+ * <p>Storage counters are only changed on the main thread; economy counters are adders because
+ * charges complete on economy worker threads.
+ */
+public final class StorageStats {
+  private static final int MAX_SLOTS = 64;
+
+  private final long[] unlockedSlots = new long[MAX_SLOTS];
+
+  private final long[] donorSlots = new long[MAX_SLOTS];
+
+  private long owners;
+
+  private long donorSlotsInUse;
+
+  private long storedStacks;
+
+  private long storedItems;
+
+  // {stacks, items} per material
+  private final Map<Material, long[]> materials = new EnumMap<>(Material.class);
+
+  private final Map<String, EconomyCounter> economy = new ConcurrentHashMap<>();
+
+  /**
+   * A regular or donor slot was unlocked ({@code delta} 1) or locked ({@code delta} -1).
+   */
+  public void slotChanged(int slot, boolean donor, int delta) {
+    if (slot < 0 || slot >= MAX_SLOTS)
+      return;
+    if (donor) {
+      this.donorSlots[slot] += delta;
+    } else {
+      this.unlockedSlots[slot] += delta;
+    }
+  }
+
+  /**
+   * A player gained their first slot ({@code delta} 1) or lost their last one ({@code delta} -1).
+   */
+  public void ownerChanged(int delta) {
+    this.owners += delta;
+  }
+
+  /**
+   * A donor slot started ({@code delta} 1) or stopped ({@code delta} -1) holding an item.
+   */
+  public void donorSlotUseChanged(int delta) {
+    this.donorSlotsInUse += delta;
+  }
+
+  /**
+   * A stored stack changed from {@code previous} to {@code current}; either may be null.
+   */
+  public void itemChanged(ItemStack previous, ItemStack current) {
+    if (previous != null && !previous.getType().isAir())
+      addItem(previous.getType(), -1L, -previous.getAmount());
+    if (current != null && !current.getType().isAir())
+      addItem(current.getType(), 1L, current.getAmount());
+  }
+
+  private void addItem(Material material, long stacks, long items) {
+    this.storedStacks += stacks;
+    this.storedItems += items;
+    long[] counts = this.materials.computeIfAbsent(material, key -> new long[2]);
+    counts[0] += stacks;
+    counts[1] += items;
+    if (counts[0] <= 0L)
+      this.materials.remove(material);
+  }
+
+  public void recordCharge(String operation, double amount, boolean success) {
+    EconomyCounter counter = this.economy.computeIfAbsent(operation, key -> new EconomyCounter());
+    if (success) {
+      counter.charges.increment();
+      counter.volume.add(amount);
+    } else {
+      counter.failures.increment();
+    }
+  }
+
+  public void recordRefund(String operation, double amount) {
+    EconomyCounter counter = this.economy.computeIfAbsent(operation, key -> new EconomyCounter());
+    counter.refunds.increment();
+    counter.refunded.add(amount);
+  }
+
+  /**
+   * Human-readable summary for {@code /storageadmin stats}, label to value.
+   */
+  public Map<String, String> summary(int topMaterials) {
+    Map<String, String> lines = new LinkedHashMap<>();
+    lines.put("Storage owners", String.valueOf(this.owners));
+    lines.put("Slots unlocked", describeSlots(this.unlockedSlots));
+    lines.put("Donor slots unlocked", describeSlots(this.donorSlots));
+    lines.put("Donor slots in use", String.valueOf(this.donorSlotsInUse));
+    lines.put("Stored", this.storedStacks + " stacks, " + this.storedItems + " items, " + this.materials.size() + " materials");
+    StringBuilder top = new StringBuilder();
+    for (Map.Entry<Material, long[]> entry : topMaterials(topMaterials)) {
+      if (top.length() > 0)
+        top.append(", ");
+      top.append(entry.getKey().name().toLowerCase()).append(" x").append(entry.getValue()[1]);
+    }
+    lines.put("Top materials", (top.length() > 0) ? top.toString() : "none");
+    for (Map.Entry<String, EconomyCounter> entry : this.economy.entrySet()) {
+      EconomyCounter counter = entry.getValue();
+      lines.put("Economy " + entry.getKey(), counter.charges.sum() + " charges, volume " + String.format("%.2f", counter.volume.sum())
+          + ", " + counter.failures.sum() + " failed, " + counter.refunds.sum() + " refunded (" + String.format("%.2f", counter.refunded.sum()) + ")");
+    }
+    return lines;
+  }
+
+  public String toJson() {
+    JsonObject json = new JsonObject();
+    json.addProperty("generated-at", Long.valueOf(System.currentTimeMillis()));
+    json.addProperty("owners", Long.valueOf(this.owners));
+    json.add("slots-unlocked", slotsToJson(this.unlockedSlots));
+    json.add("donor-slots-unlocked", slotsToJson(this.donorSlots));
+    json.addProperty("donor-slots-in-use", Long.valueOf(this.donorSlotsInUse));
+    json.addProperty("stored-stacks", Long.valueOf(this.storedStacks));
+    json.addProperty("stored-items", Long.valueOf(this.storedItems));
+    JsonObject materialsJson = new JsonObject();
+    for (Map.Entry<Material, long[]> entry : this.materials.entrySet()) {
+      JsonObject counts = new JsonObject();
+      counts.addProperty("stacks", Long.valueOf(entry.getValue()[0]));
+      counts.addProperty("items", Long.valueOf(entry.getValue()[1]));
+      materialsJson.add(entry.getKey().name(), counts);
+    }
+    json.add("materials", materialsJson);
+    JsonObject economyJson = new JsonObject();
+    for (Map.Entry<String, EconomyCounter> entry : this.economy.entrySet()) {
+      EconomyCounter counter = entry.getValue();
+      JsonObject counts = new JsonObject();
+      counts.addProperty("charges", Long.valueOf(counter.charges.sum()));
+      counts.addProperty("volume", Double.valueOf(counter.volume.sum()));
+      counts.addProperty("failures", Long.valueOf(counter.failures.sum()));
+      counts.addProperty("refunds", Long.valueOf(counter.refunds.sum()));
+      counts.addProperty("refunded", Double.valueOf(counter.refunded.sum()));
+      economyJson.add(entry.getKey(), counts);
+    }
+    json.add("economy", economyJson);
+    return new GsonBuilder().setPrettyPrinting().create().toJson(json);
+  }
+
+  private List<Map.Entry<Material, long[]>> topMaterials(int limit) {
+    List<Map.Entry<Material, long[]>> entries = new ArrayList<>(this.materials.entrySet());
+    entries.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+    return entries.subList(0, Math.min(limit, entries.size()));
+  }
+
+  private static String describeSlots(long[] counts) {
+    StringBuilder builder = new StringBuilder();
+    long total = 0L;
+    for (int slot = 0; slot < counts.length; slot++) {
+      if (counts[slot] == 0L)
+        continue;
+      total += counts[slot];
+      builder.append((builder.length() > 0) ? ", " : " (").append('#').append(slot + 1).append(": ").append(counts[slot]);
+    }
+    return total + ((builder.length() > 0) ? builder.append(')').toString() : "");
+  }
+
+  private static JsonArray slotsToJson(long[] counts) {
+    int last = counts.length - 1;
+    while (last >= 0 && counts[last] == 0L)
+      last--;
+    JsonArray array = new JsonArray();
+    for (int slot = 0; slot <= last; slot++)
+      array.add(Long.valueOf(counts[slot]));
+    return array;
+  }
+
+  private static final class EconomyCounter {
+    private final LongAdder charges = new LongAdder();
+
+    private final DoubleAdder volume = new DoubleAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder refunds = new LongAdder();
+
+    private final DoubleAdder refunded = new DoubleAdder();
+  }
+}
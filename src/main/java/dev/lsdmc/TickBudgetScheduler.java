@@ -0,0 +1,104 @@
+package dev.lsdmc;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Runs small main-thread jobs (one player's auto-save serialization, one reminder check, ...)
+ * under a per-tick time budget. Each tick works through the queue in order until the budget is
+ * used up and leaves the rest for the next tick, so a full server pays a steady small cost
+ * instead of one long tick. At least one job runs per tick, so the queue always makes progress.
+ */
+public final class TickBudgetScheduler {
+  private final Plugin plugin;
+
+  private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+  private volatile long budgetNanos;
+
+  private BukkitTask task;
+
+  private long jobsRun;
+
+  private long ticksOverBudget;
+
+  public TickBudgetScheduler(Plugin plugin, long budgetMicros) {
+    this.plugin = plugin;
+    setBudgetMicros(budgetMicros);
+  }
+
+  public void start() {
+    if (this.task == null)
+      this.task = this.plugin.getServer().getScheduler().runTaskTimer(this.plugin, this::runTick, 1L, 1L);
+  }
+
+  /**
+   * Stops the scheduler and discards queued jobs; callers persist anything important themselves.
+   */
+  public void stop() {
+    if (this.task != null) {
+      this.task.cancel();
+      this.task = null;
+    }
+    this.queue.clear();
+  }
+
+  public void setBudgetMicros(long budgetMicros) {
+    this.budgetNanos = Math.max(50L, budgetMicros) * 1000L;
+  }
+
+  /**
+   * Queues one job. Must be called from the main thread.
+   */
+  public void submit(Runnable job) {
+    this.queue.addLast(job);
+  }
+
+  /**
+   * Queues one job per item, followed by {@code whenDone} once all of them have run.
+   * Must be called from the main thread.
+   */
+  public <T> void submitEach(Collection<? extends T> items, Consumer<? super T> job, Runnable whenDone) {
+    for (T item : items)
+      this.queue.addLast(() -> job.accept(item));
+    if (whenDone != null)
+      this.queue.addLast(whenDone);
+  }
+
+  public int getPendingJobs() {
+    return this.queue.size();
+  }
+
+  public long getJobsRun() {
+    return this.jobsRun;
+  }
+
+  public long getTicksOverBudget() {
+    return this.ticksOverBudget;
+  }
+
+  private void runTick() {
+    if (this.queue.isEmpty())
+      return;
+    long started = System.nanoTime();
+    long deadline = started + this.budgetNanos;
+    Runnable job;
+    do {
+      job = this.queue.pollFirst();
+      if (job == null)
+        return;
+      try {
+        job.run();
+      } catch (Exception e) {
+        this.plugin.getLogger().log(Level.WARNING, "Scheduled job failed", e);
+      }
+      this.jobsRun++;
+    } while (System.nanoTime() < deadline);
+    if (System.nanoTime() - started > this.budgetNanos && !this.queue.isEmpty())
+      this.ticksOverBudget++;
+  }
+}
@@ -0,0 +1,115 @@
+package dev.lsdmc;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel holding at most one pending deadline per player. Scheduling and
+ * cancelling are O(1); each {@link #advance} only visits the buckets whose time has passed, so
+ * the cost follows the number of due entries rather than the number of scheduled players.
+ * Deadlines further out than one revolution wait extra rounds in their bucket.
+ * Not thread-safe; use from the main thread only.
+ */
+public final class TimingWheel {
+  private final long tickMs;
+
+  private final List<Entry>[] buckets;
+
+  private final int mask;
+
+  private final Map<UUID, Entry> entries = new HashMap<>();
+
+  private long currentTick;
+
+  @SuppressWarnings("unchecked")
+  public TimingWheel(long tickMs, int wheelSize, long now) {
+    int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+    this.tickMs = Math.max(1L, tickMs);
+    this.buckets = (List<Entry>[])new List[size];
+    for (int i = 0; i < size; i++)
+      this.buckets[i] = new ArrayList<>();
+    this.mask = size - 1;
+    this.currentTick = now / this.tickMs;
+  }
+
+  /**
+   * Schedules {@code playerId} for {@code deadline} (epoch millis), replacing any earlier deadline.
+   */
+  public void schedule(UUID playerId, long deadline) {
+    cancel(playerId);
+    // Never place an entry in the bucket being processed or behind it
+    long tick = Math.max(this.currentTick + 1L, (deadline + this.tickMs - 1L) / this.tickMs);
+    long ticksAhead = tick - this.currentTick;
+    Entry entry = new Entry(playerId, (ticksAhead - 1L) / this.buckets.length);
+    this.buckets[(int)(tick & this.mask)].add(entry);
+    this.entries.put(playerId, entry);
+  }
+
+  public void cancel(UUID playerId) {
+    Entry entry = this.entries.remove(playerId);
+    if (entry != null)
+      entry.cancelled = true;
+  }
+
+  public boolean isScheduled(UUID playerId) {
+    return this.entries.containsKey(playerId);
+  }
+
+  public int size() {
+    return this.entries.size();
+  }
+
+  public void clear() {
+    for (List<Entry> bucket : this.buckets)
+      bucket.clear();
+    this.entries.clear();
+  }
+
+  /**
+   * Moves the wheel forward to {@code now} and hands every expired player to {@code onDue}.
+   * Callbacks may schedule the same player again.
+   */
+  public void advance(long now, Consumer<UUID> onDue) {
+    long targetTick = now / this.tickMs;
+    // After a long stall one revolution visits every bucket; multi-round entries then fire late, never early
+    long steps = Math.min(targetTick - this.currentTick, this.buckets.length);
+    List<UUID> due = new ArrayList<>();
+    for (long i = 0; i < steps; i++) {
+      this.currentTick++;
+      Iterator<Entry> iterator = this.buckets[(int)(this.currentTick & this.mask)].iterator();
+      while (iterator.hasNext()) {
+        Entry entry = iterator.next();
+        if (entry.cancelled) {
+          iterator.remove();
+        } else if (entry.rounds > 0L) {
+          entry.rounds--;
+        } else {
+          iterator.remove();
+          this.entries.remove(entry.playerId, entry);
+          due.add(entry.playerId);
+        }
+      }
+    }
+    this.currentTick = Math.max(this.currentTick, targetTick);
+    for (UUID playerId : due)
+      onDue.accept(playerId);
+  }
+
+  private static final class Entry {
+    private final UUID playerId;
+
+    private long rounds;
+
+    private boolean cancelled;
+
+    private Entry(UUID playerId, long rounds) {
+      this.playerId = playerId;
+      this.rounds = rounds;
+    }
+  }
+}
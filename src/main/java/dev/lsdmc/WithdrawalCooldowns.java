@@ -0,0 +1,59 @@
+package dev.lsdmc;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-slot withdrawal cooldown deadlines, one {@code long[]} per player. Checking a cooldown is
+ * a map lookup and an array read with no allocation; the array is created on a player's first
+ * withdrawal and dropped by {@link #sweep} once none of its deadlines are in the future, which
+ * also covers players who logged off.
+ */
+final class WithdrawalCooldowns {
+  private static final int SLOTS = 54;
+
+  // Index SLOTS holds the latest deadline in the array so the sweeper can test it in O(1)
+  private static final int LATEST = SLOTS;
+
+  private final Map<UUID, long[]> deadlines = new ConcurrentHashMap<>();
+
+  /**
+   * Milliseconds left on the cooldown for this slot, or 0 if none.
+   */
+  long remainingMs(UUID playerId, int slot, long now) {
+    long[] playerDeadlines = this.deadlines.get(playerId);
+    if (playerDeadlines == null || slot < 0 || slot >= SLOTS)
+      return 0L;
+    return Math.max(0L, playerDeadlines[slot] - now);
+  }
+
+  void start(UUID playerId, int slot, long now, long durationMs) {
+    if (slot < 0 || slot >= SLOTS || durationMs <= 0L)
+      return;
+    long[] playerDeadlines = this.deadlines.computeIfAbsent(playerId, id -> new long[SLOTS + 1]);
+    long deadline = now + durationMs;
+    playerDeadlines[slot] = deadline;
+    if (deadline > playerDeadlines[LATEST])
+      playerDeadlines[LATEST] = deadline;
+  }
+
+  /**
+   * Drops every player whose cooldowns have all expired. Returns the number of players removed.
+   */
+  int sweep(long now) {
+    int removed = 0;
+    for (Iterator<long[]> iterator = this.deadlines.values().iterator(); iterator.hasNext(); ) {
+      if (iterator.next()[LATEST] <= now) {
+        iterator.remove();
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  int size() {
+    return this.deadlines.size();
+  }
+}
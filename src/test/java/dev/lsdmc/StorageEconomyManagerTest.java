@@ -0,0 +1,114 @@
+package dev.lsdmc;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.plugin.ServicePriority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+import org.mockbukkit.mockbukkit.entity.PlayerMock;
+
+class StorageEconomyManagerTest {
+  private static final double FEE = 10.0D;
+
+  private final CountDownLatch releaseWithdrawal = new CountDownLatch(1);
+
+  private ServerMock server;
+
+  private Economy vault;
+
+  private StorageEconomyManager economyManager;
+
+  private PlayerMock player;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    this.server = MockBukkit.mock();
+    // Hard dependencies from plugin.yml, and the Vault plugin the economy manager looks for
+    MockBukkit.createMockPlugin("WorldGuard");
+    MockBukkit.createMockPlugin("PlayerPoints");
+    MockBukkit.createMockPlugin("Vault");
+    this.vault = mock(Economy.class);
+    when(this.vault.getName()).thenReturn("TestEconomy");
+    when(this.vault.getBalance(any(OfflinePlayer.class))).thenReturn(Double.valueOf(100.0D));
+    when(this.vault.withdrawPlayer(any(OfflinePlayer.class), anyDouble())).thenAnswer(invocation -> {
+      // Stands in for a provider that is slow to respond
+      this.releaseWithdrawal.await(10L, TimeUnit.SECONDS);
+      return new EconomyResponse(FEE, 90.0D, EconomyResponse.ResponseType.SUCCESS, null);
+    });
+    when(this.vault.depositPlayer(any(OfflinePlayer.class), anyDouble()))
+      .thenReturn(new EconomyResponse(FEE, 100.0D, EconomyResponse.ResponseType.SUCCESS, null));
+    this.server.getServicesManager().register(Economy.class, this.vault, MockBukkit.createMockPlugin("TestEconomy"), ServicePriority.Normal);
+    StorageSlots plugin = MockBukkit.load(StorageSlots.class);
+    plugin.getConfig().set("economy.withdrawal-fees.use-vault", Boolean.TRUE);
+    plugin.getConfig().set("economy.executor.timeout-ms", Integer.valueOf(500));
+    this.economyManager = new StorageEconomyManager(plugin, plugin.getConfigManager(), null);
+    this.player = this.server.addPlayer();
+  }
+
+  @AfterEach
+  void tearDown() {
+    this.releaseWithdrawal.countDown();
+    this.economyManager.shutdown();
+    MockBukkit.unmock();
+  }
+
+  @Test
+  void chargeThatGoesThroughAfterTimingOutIsRefunded() throws Exception {
+    UUID chargeId = UUID.randomUUID();
+    CompletableFuture<Boolean> charge = this.economyManager.takeMoney(this.player, FEE, "withdrawal-fees", chargeId);
+    tickUntilDone(charge);
+    ExecutionException failure = assertThrows(ExecutionException.class, charge::get);
+    assertInstanceOf(TimeoutException.class, failure.getCause());
+
+    this.releaseWithdrawal.countDown();
+    verify(this.vault, timeout(5000L)).depositPlayer(this.player, FEE);
+
+    // Already given back; rollback paths calling refund for the same key must not pay out again
+    CompletableFuture<Boolean> second = this.economyManager.refund(this.player, chargeId);
+    assertFalse(second.get().booleanValue());
+    verify(this.vault, after(500L).times(1)).depositPlayer(any(OfflinePlayer.class), anyDouble());
+  }
+
+  @Test
+  void chargeThatCompletesInTimeIsKept() throws Exception {
+    this.releaseWithdrawal.countDown();
+    CompletableFuture<Boolean> charge = this.economyManager.takeMoney(this.player, FEE, "withdrawal-fees", UUID.randomUUID());
+    tickUntilDone(charge);
+    assertTrue(charge.get().booleanValue());
+    verify(this.vault, times(1)).withdrawPlayer(this.player, FEE);
+    verify(this.vault, after(500L).never()).depositPlayer(any(OfflinePlayer.class), anyDouble());
+  }
+
+  // Results are handed to the main thread through the scheduler, which only runs when ticked
+  private void tickUntilDone(CompletableFuture<?> future) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+    while (!future.isDone() && System.nanoTime() < deadline) {
+      this.server.getScheduler().performOneTick();
+      Thread.sleep(10L);
+    }
+    assertTrue(future.isDone(), "charge did not settle");
+  }
+}
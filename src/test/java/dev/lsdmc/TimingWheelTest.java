@@ -0,0 +1,108 @@
+package dev.lsdmc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class TimingWheelTest {
+  // 8 buckets of 10ms: one revolution is 80ms
+  private static final long TICK_MS = 10L;
+
+  private static final int BUCKETS = 8;
+
+  private static final long REVOLUTION_MS = TICK_MS * BUCKETS;
+
+  private final TimingWheel wheel = new TimingWheel(TICK_MS, BUCKETS, 0L);
+
+  private final List<UUID> fired = new ArrayList<>();
+
+  private final UUID player = UUID.randomUUID();
+
+  private final UUID other = UUID.randomUUID();
+
+  @Test
+  void deadlineWithinOneRevolutionFiresInItsTick() {
+    this.wheel.schedule(this.player, 35L);
+    advance(39L);
+    assertTrue(this.fired.isEmpty());
+    advance(40L);
+    assertEquals(List.of(this.player), this.fired);
+    assertFalse(this.wheel.isScheduled(this.player));
+  }
+
+  @Test
+  void deadlineExactlyOneRevolutionOutWaitsForTheSecondVisit() {
+    // Lands in bucket 0, which the wheel first reaches one revolution from now
+    this.wheel.schedule(this.player, REVOLUTION_MS);
+    // And in bucket 1, which is passed once on the way there
+    this.wheel.schedule(this.other, REVOLUTION_MS + TICK_MS);
+    advance(REVOLUTION_MS - 1L);
+    assertTrue(this.fired.isEmpty());
+    advance(REVOLUTION_MS);
+    assertEquals(List.of(this.player), this.fired);
+    advance(REVOLUTION_MS + TICK_MS);
+    assertEquals(List.of(this.player, this.other), this.fired);
+  }
+
+  @Test
+  void multiRoundDeadlineFiresOnlyAfterItsRounds() {
+    long deadline = 3L * REVOLUTION_MS + 10L;
+    this.wheel.schedule(this.player, deadline);
+    for (long now = TICK_MS; now < deadline; now += TICK_MS)
+      advance(now);
+    assertTrue(this.fired.isEmpty());
+    advance(deadline);
+    assertEquals(List.of(this.player), this.fired);
+    assertEquals(0, this.wheel.size());
+  }
+
+  @Test
+  void cancelledEntryNeverFiresAndCanBeRescheduled() {
+    this.wheel.schedule(this.player, 50L);
+    this.wheel.cancel(this.player);
+    assertFalse(this.wheel.isScheduled(this.player));
+    // Same bucket as the cancelled entry, which is still in it
+    this.wheel.schedule(this.player, 50L);
+    advance(50L);
+    assertEquals(List.of(this.player), this.fired);
+
+    this.wheel.schedule(this.player, 70L);
+    this.wheel.schedule(this.player, 120L);
+    advance(110L);
+    assertEquals(1, this.fired.size());
+    advance(120L);
+    assertEquals(List.of(this.player, this.player), this.fired);
+  }
+
+  @Test
+  void advanceAfterStallLongerThanOneRevolutionFiresDueEntriesLateNeverEarly() {
+    UUID multiRound = UUID.randomUUID();
+    UUID future = UUID.randomUUID();
+    this.wheel.schedule(this.player, 30L);
+    this.wheel.schedule(this.other, 60L);
+    this.wheel.schedule(multiRound, 3L * REVOLUTION_MS + 10L);
+    this.wheel.schedule(future, 2000L);
+    long stalledUntil = 1000L;
+    advance(stalledUntil);
+    // One catch-up revolution visits every bucket once: single-round entries all fire
+    assertEquals(List.of(this.player, this.other), this.fired);
+    // Entries still counting rounds fire late, within as many further revolutions as they had left
+    for (long now = stalledUntil + TICK_MS; now <= stalledUntil + 3L * REVOLUTION_MS; now += TICK_MS)
+      advance(now);
+    assertTrue(this.fired.contains(multiRound));
+    assertEquals(3, this.fired.size());
+    for (long now = stalledUntil + 3L * REVOLUTION_MS + TICK_MS; now < 2000L; now += TICK_MS)
+      advance(now);
+    assertFalse(this.fired.contains(future));
+    assertTrue(this.wheel.isScheduled(future));
+  }
+
+  private void advance(long now) {
+    this.wheel.advance(now, this.fired::add);
+  }
+}
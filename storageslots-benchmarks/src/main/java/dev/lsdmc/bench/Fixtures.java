@@ -0,0 +1,104 @@
+package dev.lsdmc.bench;
+
+import dev.lsdmc.PlayerStorageData;
+import dev.lsdmc.StorageDataManager;
+import dev.lsdmc.StorageSlots;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.Stream;
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Shared setup for the benchmarks and the load test: a plugin instance in a temporary folder and
+ * synthetic storage contents shaped like a live server's.
+ */
+public final class Fixtures {
+  // Ordinary materials only; nothing on the default prohibited list
+  private static final Material[] MATERIALS = {
+      Material.STONE, Material.COBBLESTONE, Material.OAK_LOG, Material.IRON_INGOT, Material.GOLD_INGOT,
+      Material.DIAMOND, Material.EMERALD, Material.REDSTONE, Material.ENDER_PEARL, Material.BREAD };
+
+  private Fixtures() {
+  }
+
+  /**
+   * Config applied on top of the defaults: no timers or watchers that would run between
+   * measurements, and no per-transaction logging.
+   */
+  public static Map<String, Object> quietConfig() {
+    Map<String, Object> config = new HashMap<>();
+    config.put("auto-save.enabled", Boolean.FALSE);
+    config.put("hot-reload.enabled", Boolean.FALSE);
+    config.put("statistics.export-interval", Integer.valueOf(0));
+    config.put("security.log-transactions", Boolean.FALSE);
+    config.put("safezone.enabled", Boolean.FALSE);
+    return config;
+  }
+
+  public static StorageSlots startPlugin(HeadlessServer server, Map<String, Object> config) {
+    return HeadlessPlugin.start(server, config);
+  }
+
+  /**
+   * Adds {@code players} players with storage: about half of the nine regular slots unlocked and
+   * mostly filled, and one in ten with donor slots in use. Returns their ids.
+   */
+  public static List<UUID> populate(StorageDataManager dataManager, int players, long seed) {
+    Random random = new Random(seed);
+    List<UUID> playerIds = new ArrayList<>(players);
+    for (int i = 0; i < players; i++) {
+      UUID playerId = new UUID(seed, i);
+      fill(dataManager.getPlayerData(playerId), random);
+      playerIds.add(playerId);
+    }
+    dataManager.markDirty();
+    return playerIds;
+  }
+
+  /**
+   * Gives one player storage shaped like {@link #populate}'s. Returns whether they got donor
+   * slots, which only work if the player also has the {@code mvp} donor permission.
+   */
+  public static boolean fill(PlayerStorageData data, Random random) {
+    int unlocked = 1 + random.nextInt(9);
+    for (int slot = 0; slot < unlocked; slot++) {
+      data.unlockSlot(slot);
+      if (random.nextInt(4) != 0)
+        data.setItem(slot, randomItem(random));
+    }
+    if (random.nextInt(10) != 0)
+      return false;
+    for (int slot = 11; slot <= 13; slot++) {
+      data.unlockDonorSlot(slot);
+      data.setItem(slot, randomItem(random));
+    }
+    data.setCurrentDonorRank("mvp");
+    return true;
+  }
+
+  public static ItemStack randomItem(Random random) {
+    return new ItemStack(MATERIALS[random.nextInt(MATERIALS.length)], 1 + random.nextInt(64));
+  }
+
+  public static void deleteRecursively(File folder) {
+    if (folder == null || !folder.exists())
+      return;
+    try (Stream<Path> paths = Files.walk(folder.toPath())) {
+      for (Path path : paths.sorted(Comparator.reverseOrder()).toList())
+        Files.deleteIfExists(path);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
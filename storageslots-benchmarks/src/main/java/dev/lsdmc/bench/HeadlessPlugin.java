@@ -0,0 +1,52 @@
+package dev.lsdmc.bench;
+
+import dev.lsdmc.StorageSlots;
+import java.util.Map;
+import org.bukkit.plugin.PluginManager;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+
+/**
+ * Runs the real plugin on the mock server. It is loaded and enabled by MockBukkit's plugin
+ * manager, the same way a server would, and only the public API is used afterwards.
+ */
+public final class HeadlessPlugin {
+  private HeadlessPlugin() {
+  }
+
+  /**
+   * Loads and enables StorageSlots in a fresh data folder, with {@code config} applied on top of
+   * the default config.yml.
+   */
+  public static StorageSlots start(ServerMock server, Map<String, Object> config) {
+    // Hard dependencies from plugin.yml; the plugin copes with them having nothing behind them
+    for (String dependency : new String[] { "WorldGuard", "PlayerPoints" }) {
+      if (server.getPluginManager().getPlugin(dependency) == null)
+        MockBukkit.createMockPlugin(dependency);
+    }
+    StorageSlots plugin = MockBukkit.load(StorageSlots.class);
+    if (!config.isEmpty()) {
+      // The managers read the config as they are created, so apply the overrides and enable it again
+      PluginManager pluginManager = server.getPluginManager();
+      pluginManager.disablePlugin(plugin);
+      for (Map.Entry<String, Object> entry : config.entrySet())
+        plugin.getConfig().set(entry.getKey(), entry.getValue());
+      plugin.saveConfig();
+      pluginManager.enablePlugin(plugin);
+    }
+    if (!plugin.isEnabled() || plugin.getStorageManager() == null)
+      throw new IllegalStateException("StorageSlots did not finish enabling, see the log above");
+    // After the re-enable above, a plugin still marked as shutting down would refuse storage access
+    if (plugin.isShuttingDown())
+      throw new IllegalStateException("StorageSlots is still shutting down after being enabled again");
+    return plugin;
+  }
+
+  /**
+   * Disables the plugin through the plugin manager, which runs its normal {@code onDisable}
+   * including the shutdown save.
+   */
+  public static void stop(StorageSlots plugin) {
+    plugin.getServer().getPluginManager().disablePlugin(plugin);
+  }
+}
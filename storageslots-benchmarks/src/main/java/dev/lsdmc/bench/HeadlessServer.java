@@ -0,0 +1,36 @@
+package dev.lsdmc.bench;
+
+import java.util.Arrays;
+import org.bukkit.OfflinePlayer;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+
+/**
+ * MockBukkit's server with the few Paper methods the plugin reads on hot paths answered locally:
+ * TPS, which the auto-save scheduler checks every second, and the offline-player cache used by
+ * admin name lookups.
+ */
+public class HeadlessServer extends ServerMock {
+  private volatile double tps = 20.0D;
+
+  public static HeadlessServer mock() {
+    return MockBukkit.mock(new HeadlessServer());
+  }
+
+  public void setTps(double tps) {
+    this.tps = tps;
+  }
+
+  @Override
+  public double[] getTPS() {
+    double[] values = new double[3];
+    Arrays.fill(values, this.tps);
+    return values;
+  }
+
+  @Override
+  public OfflinePlayer getOfflinePlayerIfCached(String name) {
+    // Only online players are known to a headless server
+    return getPlayerExact(name);
+  }
+}
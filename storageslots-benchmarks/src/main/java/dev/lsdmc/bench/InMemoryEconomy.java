@@ -0,0 +1,306 @@
+package dev.lsdmc.bench;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
+import org.bukkit.OfflinePlayer;
+
+/**
+ * Vault economy kept in memory, registered in place of a real provider for the load test. Every
+ * call can be delayed by a fixed latency to stand in for a database-backed economy; the plugin
+ * calls it from its economy workers, never from the main thread. Only the {@link OfflinePlayer}
+ * methods are used by the plugin; the name-based ones are not supported.
+ */
+public final class InMemoryEconomy implements Economy {
+  private final Map<UUID, Double> balances = new ConcurrentHashMap<>();
+
+  private final double startingBalance;
+
+  private final long latencyMs;
+
+  private final LongAdder calls = new LongAdder();
+
+  public InMemoryEconomy(double startingBalance, long latencyMs) {
+    this.startingBalance = startingBalance;
+    this.latencyMs = latencyMs;
+  }
+
+  public long getCalls() {
+    return this.calls.sum();
+  }
+
+  private void simulateLatency() {
+    this.calls.increment();
+    if (this.latencyMs <= 0L)
+      return;
+    try {
+      Thread.sleep(this.latencyMs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private double balanceOf(OfflinePlayer player) {
+    return this.balances.getOrDefault(player.getUniqueId(), Double.valueOf(this.startingBalance)).doubleValue();
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return true;
+  }
+
+  @Override
+  public String getName() {
+    return "InMemoryEconomy";
+  }
+
+  @Override
+  public boolean hasBankSupport() {
+    return false;
+  }
+
+  @Override
+  public int fractionalDigits() {
+    return 2;
+  }
+
+  @Override
+  public String format(double amount) {
+    return String.format("$%.2f", amount);
+  }
+
+  @Override
+  public String currencyNamePlural() {
+    return "dollars";
+  }
+
+  @Override
+  public String currencyNameSingular() {
+    return "dollar";
+  }
+
+  @Override
+  public boolean hasAccount(OfflinePlayer player) {
+    return true;
+  }
+
+  @Override
+  public boolean hasAccount(OfflinePlayer player, String worldName) {
+    return true;
+  }
+
+  @Override
+  public double getBalance(OfflinePlayer player) {
+    simulateLatency();
+    return balanceOf(player);
+  }
+
+  @Override
+  public double getBalance(OfflinePlayer player, String world) {
+    return getBalance(player);
+  }
+
+  @Override
+  public boolean has(OfflinePlayer player, double amount) {
+    return getBalance(player) >= amount;
+  }
+
+  @Override
+  public boolean has(OfflinePlayer player, String worldName, double amount) {
+    return has(player, amount);
+  }
+
+  @Override
+  public EconomyResponse withdrawPlayer(OfflinePlayer player, double amount) {
+    simulateLatency();
+    double[] after = new double[1];
+    boolean[] success = new boolean[1];
+    this.balances.compute(player.getUniqueId(), (id, current) -> {
+      double balance = (current != null) ? current.doubleValue() : this.startingBalance;
+      success[0] = balance >= amount;
+      after[0] = success[0] ? balance - amount : balance;
+      return Double.valueOf(after[0]);
+    });
+    if (!success[0])
+      return new EconomyResponse(0.0D, after[0], EconomyResponse.ResponseType.FAILURE, "Insufficient funds");
+    return new EconomyResponse(amount, after[0], EconomyResponse.ResponseType.SUCCESS, null);
+  }
+
+  @Override
+  public EconomyResponse withdrawPlayer(OfflinePlayer player, String worldName, double amount) {
+    return withdrawPlayer(player, amount);
+  }
+
+  @Override
+  public EconomyResponse depositPlayer(OfflinePlayer player, double amount) {
+    simulateLatency();
+    double after = this.balances.merge(player.getUniqueId(), Double.valueOf(this.startingBalance + amount),
+        (current, ignored) -> Double.valueOf(current.doubleValue() + amount)).doubleValue();
+    return new EconomyResponse(amount, after, EconomyResponse.ResponseType.SUCCESS, null);
+  }
+
+  @Override
+  public EconomyResponse depositPlayer(OfflinePlayer player, String worldName, double amount) {
+    return depositPlayer(player, amount);
+  }
+
+  @Override
+  public boolean createPlayerAccount(OfflinePlayer player) {
+    return true;
+  }
+
+  @Override
+  public boolean createPlayerAccount(OfflinePlayer player, String worldName) {
+    return true;
+  }
+
+  @Override
+  public List<String> getBanks() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public EconomyResponse createBank(String name, OfflinePlayer player) {
+    return noBanks();
+  }
+
+  @Override
+  public EconomyResponse deleteBank(String name) {
+    return noBanks();
+  }
+
+  @Override
+  public EconomyResponse bankBalance(String name) {
+    return noBanks();
+  }
+
+  @Override
+  public EconomyResponse bankHas(String name, double amount) {
+    return noBanks();
+  }
+
+  @Override
+  public EconomyResponse bankWithdraw(String name, double amount) {
+    return noBanks();
+  }
+
+  @Override
+  public EconomyResponse bankDeposit(String name, double amount) {
+    return noBanks();
+  }
+
+  @Override
+  public EconomyResponse isBankOwner(String name, OfflinePlayer player) {
+    return noBanks();
+  }
+
+  @Override
+  public EconomyResponse isBankMember(String name, OfflinePlayer player) {
+    return noBanks();
+  }
+
+  private static EconomyResponse noBanks() {
+    return new EconomyResponse(0.0D, 0.0D, EconomyResponse.ResponseType.NOT_IMPLEMENTED, "No bank support");
+  }
+
+  // Name-based API, deprecated in Vault and never called by the plugin
+
+  @Override
+  @Deprecated
+  public boolean hasAccount(String playerName) {
+    throw byName();
+  }
+
+  @Override
+  @Deprecated
+  public boolean hasAccount(String playerName, String worldName) {
+    throw byName();
+  }
+
+  @Override
+  @Deprecated
+  public double getBalance(String playerName) {
+    throw byName();
+  }
+
+  @Override
+  @Deprecated
+  public double getBalance(String playerName, String world) {
+    throw byName();
+  }
+
+  @Override
+  @Deprecated
+  public boolean has(String playerName, double amount) {
+    throw byName();
+  }
+
+  @Override
+  @Deprecated
+  public boolean has(String playerName, String worldName, double amount) {
+    throw byName();
+  }
+
+  @Override
+  @Deprecated
+  public EconomyResponse withdrawPlayer(String playerName, double amount) {
+    throw byName();
+  }
+
+  @Override
+  @Deprecated
+  public EconomyResponse withdrawPlayer(String playerName, String worldName, double amount) {
+    throw byName();
+  }
+
+  @Override
+  @Deprecated
+  public EconomyResponse depositPlayer(String playerName, double amount) {
+    throw byName();
+  }
+
+  @Override
+  @Deprecated
+  public EconomyResponse depositPlayer(String playerName, String worldName, double amount) {
+    throw byName();
+  }
+
+  @Override
+  @Deprecated
+  public EconomyResponse createBank(String name, String player) {
+    return noBanks();
+  }
+
+  @Override
+  @Deprecated
+  public EconomyResponse isBankOwner(String name, String playerName) {
+    return noBanks();
+  }
+
+  @Override
+  @Deprecated
+  public EconomyResponse isBankMember(String name, String playerName) {
+    return noBanks();
+  }
+
+  @Override
+  @Deprecated
+  public boolean createPlayerAccount(String playerName) {
+    throw byName();
+  }
+
+  @Override
+  @Deprecated
+  public boolean createPlayerAccount(String playerName, String worldName) {
+    throw byName();
+  }
+
+  private static UnsupportedOperationException byName() {
+    return new UnsupportedOperationException("Name-based economy calls are not supported; use the OfflinePlayer variants");
+  }
+}
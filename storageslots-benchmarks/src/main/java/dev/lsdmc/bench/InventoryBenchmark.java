@@ -0,0 +1,94 @@
+package dev.lsdmc.bench;
+
+import dev.lsdmc.PlayerStorageData;
+import dev.lsdmc.StorageSlots;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.Inventory;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building the storage GUI, which happens on every open and is what players wait for. Measured
+ * for a player with some locked slots, a donor with donor slots in use, and an admin viewing
+ * someone else's storage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InventoryBenchmark {
+  private StorageSlots plugin;
+
+  private Player player;
+
+  private Player donor;
+
+  private Player admin;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    HeadlessServer server = HeadlessServer.mock();
+    this.plugin = Fixtures.startPlugin(server, Fixtures.quietConfig());
+    this.player = server.addPlayer("Regular");
+    this.donor = server.addPlayer("Donor");
+    this.donor.addAttachment(this.plugin, "storageslots.donor.mvp", true);
+    this.admin = server.addPlayer("Admin");
+    this.admin.setOp(true);
+    Random random = new Random(11L);
+    PlayerStorageData playerData = this.plugin.getStorageManager().getDataManager().getPlayerData(this.player.getUniqueId());
+    for (int slot = 0; slot < 5; slot++) {
+      playerData.unlockSlot(slot);
+      if (slot != 2)
+        playerData.setItem(slot, Fixtures.randomItem(random));
+    }
+    PlayerStorageData donorData = this.plugin.getStorageManager().getDataManager().getPlayerData(this.donor.getUniqueId());
+    for (int slot = 0; slot < 9; slot++) {
+      donorData.unlockSlot(slot);
+      donorData.setItem(slot, Fixtures.randomItem(random));
+    }
+    for (int slot = 11; slot <= 13; slot++) {
+      donorData.unlockDonorSlot(slot);
+      donorData.setItem(slot, Fixtures.randomItem(random));
+    }
+    // createInventory logs and returns null on failure, which would otherwise benchmark as very fast
+    if (playerView() == null || donorView() == null || adminView() == null)
+      throw new IllegalStateException("Storage GUI could not be built, see the log above");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    HeadlessPlugin.stop(this.plugin);
+    Fixtures.deleteRecursively(this.plugin.getDataFolder());
+    MockBukkit.unmock();
+  }
+
+  @Benchmark
+  public Inventory playerView() {
+    return this.plugin.getInventoryManager().createInventory(this.player, this.player.getUniqueId(), false);
+  }
+
+  @Benchmark
+  public Inventory donorView() {
+    return this.plugin.getInventoryManager().createInventory(this.donor, this.donor.getUniqueId(), false);
+  }
+
+  @Benchmark
+  public Inventory adminView() {
+    return this.plugin.getInventoryManager().createInventory(this.admin, this.donor.getUniqueId(), true);
+  }
+}
@@ -0,0 +1,45 @@
+package dev.lsdmc.bench;
+
+import java.util.Arrays;
+
+/**
+ * Collects raw samples in nanoseconds and reports percentiles. Samples are kept rather than
+ * bucketed; a load-test run produces at most a few million. Not thread-safe.
+ */
+public final class LatencyRecorder {
+  private long[] samples = new long[1024];
+
+  private int count;
+
+  public void record(long nanos) {
+    if (this.count == this.samples.length)
+      this.samples = Arrays.copyOf(this.samples, this.count * 2);
+    this.samples[this.count++] = nanos;
+  }
+
+  public int getCount() {
+    return this.count;
+  }
+
+  /**
+   * One line: count, p50, p90, p99, p99.9 and max, in milliseconds.
+   */
+  public String summary() {
+    if (this.count == 0)
+      return "no samples";
+    long[] sorted = Arrays.copyOf(this.samples, this.count);
+    Arrays.sort(sorted);
+    return String.format("n=%d p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f ms", this.count,
+        millis(percentile(sorted, 0.50D)), millis(percentile(sorted, 0.90D)), millis(percentile(sorted, 0.99D)),
+        millis(percentile(sorted, 0.999D)), millis(sorted[sorted.length - 1]));
+  }
+
+  private static long percentile(long[] sorted, double fraction) {
+    int index = (int)Math.ceil(fraction * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+  }
+
+  private static double millis(long nanos) {
+    return nanos / 1000000.0D;
+  }
+}
@@ -0,0 +1,569 @@
+package dev.lsdmc.bench;
+
+import dev.lsdmc.PlayerStorageData;
+import dev.lsdmc.StorageDataManager;
+import dev.lsdmc.StorageInventoryManager;
+import dev.lsdmc.StorageManager;
+import dev.lsdmc.StorageSlots;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import net.milkbowl.vault.economy.Economy;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryAction;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryType;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.ServicePriority;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.entity.PlayerMock;
+
+/**
+ * Simulated players using their storage at the same time, driven through the plugin's real event
+ * handlers, economy paths and save scheduler on a MockBukkit server with an in-memory Vault
+ * economy. Each tick every player may open or close their storage, deposit, withdraw with a fee,
+ * buy the next slot, disconnect or reconnect, at the configured per-second rates. Reports
+ * per-operation latency percentiles and allocation, tick times, save durations and GC activity.
+ *
+ * <p>Handler times are measured around the event call. Withdrawals and purchases finish on the
+ * economy workers; their completion time is observed once per tick, so it is only as fine as
+ * {@code --tick-ms}.
+ *
+ * <pre>java -cp target/benchmarks.jar dev.lsdmc.bench.LoadTest --players=200 --duration=120</pre>
+ */
+public final class LoadTest {
+  private enum Op {
+    OPEN, DEPOSIT, WITHDRAW, PURCHASE, CLOSE, DISCONNECT, RECONNECT
+  }
+
+  // Withdrawals and purchases still running after this are reported as unsettled
+  private static final long SETTLE_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10L);
+
+  private final Options options;
+
+  private final Random random;
+
+  private final Map<Op, LatencyRecorder> handlerTimes = new EnumMap<>(Op.class);
+
+  private final Map<Op, long[]> allocatedBytes = new EnumMap<>(Op.class);
+
+  private final Map<Op, LatencyRecorder> settleTimes = new EnumMap<>(Op.class);
+
+  private final Map<String, Integer> outcomes = new TreeMap<>();
+
+  private final LatencyRecorder tickTimes = new LatencyRecorder();
+
+  private final LatencyRecorder saveTimes = new LatencyRecorder();
+
+  private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+  private HeadlessServer server;
+
+  private StorageSlots plugin;
+
+  private StorageManager storageManager;
+
+  private StorageDataManager dataManager;
+
+  private StorageInventoryManager inventoryManager;
+
+  private InMemoryEconomy economy;
+
+  private final List<SimulatedPlayer> players = new ArrayList<>();
+
+  private long saveStarted;
+
+  private long operationAllocated;
+
+  private int overruns;
+
+  private LoadTest(Options options) {
+    this.options = options;
+    this.random = new Random(options.seed);
+    for (Op op : Op.values()) {
+      this.handlerTimes.put(op, new LatencyRecorder());
+      this.allocatedBytes.put(op, new long[1]);
+    }
+    this.settleTimes.put(Op.WITHDRAW, new LatencyRecorder());
+    this.settleTimes.put(Op.PURCHASE, new LatencyRecorder());
+  }
+
+  public static void main(String[] args) throws Exception {
+    Options options = Options.parse(args);
+    LoadTest test = new LoadTest(options);
+    try {
+      test.setUp();
+      test.run();
+    } finally {
+      test.tearDown();
+    }
+  }
+
+  private void setUp() throws Exception {
+    this.server = HeadlessServer.mock();
+    // The plugin only uses Vault when a plugin of that name is enabled and an Economy is registered
+    MockBukkit.createMockPlugin("Vault");
+    this.economy = new InMemoryEconomy(1.0E9D, this.options.economyLatencyMs);
+    this.server.getServicesManager().register(Economy.class, this.economy, MockBukkit.createMockPlugin("InMemoryEconomy"), ServicePriority.Normal);
+    Map<String, Object> config = Fixtures.quietConfig();
+    config.put("auto-save.enabled", Boolean.TRUE);
+    config.put("auto-save.interval", Integer.valueOf(this.options.saveIntervalSeconds));
+    config.put("auto-save.idle-flush-after", Integer.valueOf(this.options.idleFlushSeconds));
+    for (String operation : new String[] { "slot-purchase", "withdrawal-fees", "donor-slots" }) {
+      config.put("economy." + operation + ".use-vault", Boolean.TRUE);
+      config.put("economy." + operation + ".currency", "money");
+    }
+    this.plugin = Fixtures.startPlugin(this.server, config);
+    this.storageManager = this.plugin.getStorageManager();
+    this.dataManager = this.storageManager.getDataManager();
+    this.inventoryManager = this.storageManager.getInventoryManager();
+    if (this.options.storedPlayers > 0)
+      Fixtures.populate(this.dataManager, this.options.storedPlayers, this.options.seed);
+    for (int i = 0; i < this.options.players; i++) {
+      PlayerMock player = this.server.addPlayer("Sim" + i);
+      player.addAttachment(this.plugin, "storageslots.bypass.rank", true);
+      player.addAttachment(this.plugin, "storageslots.bypass.cooldown", true);
+      if (Fixtures.fill(this.dataManager.getPlayerData(player.getUniqueId()), this.random))
+        player.addAttachment(this.plugin, "storageslots.donor.mvp", true);
+      this.players.add(new SimulatedPlayer(player));
+    }
+    this.dataManager.markDirty();
+    checkStandIns();
+  }
+
+  /**
+   * Fails fast if the stand-in server does not behave like the real one where the plugin depends
+   * on it; otherwise every operation would be silently ignored and the report meaningless.
+   */
+  private void checkStandIns() throws Exception {
+    PlayerMock player = this.players.get(0).player;
+    // Results are handed back on the main thread, so keep ticking rather than block on them
+    CompletableFuture<Double> balance = this.plugin.getEconomyManager().getBalance(player, "slot-purchase");
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+    while (!balance.isDone() && System.nanoTime() < deadline) {
+      this.server.getScheduler().performOneTick();
+      Thread.sleep(1L);
+    }
+    if (this.economy.getCalls() == 0L)
+      throw new IllegalStateException("The plugin did not pick up the in-memory Vault economy");
+    this.storageManager.openStorage(player);
+    InventoryView view = player.getOpenInventory();
+    if (!this.inventoryManager.hasStorageOpen(player) || !this.inventoryManager.isValidStorageInventory(view.getTitle()))
+      throw new IllegalStateException("Opening storage did not produce a storage view (title: " + view.getTitle() + ")");
+    player.closeInventory();
+    if (this.inventoryManager.hasStorageOpen(player))
+      throw new IllegalStateException("Closing the view did not reach the plugin's close handler");
+  }
+
+  private void run() throws InterruptedException {
+    long tickNanos = TimeUnit.MILLISECONDS.toNanos(this.options.tickMs);
+    long gcCountBefore = gcCount();
+    long gcTimeBefore = gcTimeMs();
+    long allocatedBefore = this.threads.getCurrentThreadAllocatedBytes();
+    long started = System.nanoTime();
+    long end = started + TimeUnit.SECONDS.toNanos(this.options.durationSeconds);
+    long nextTick = started;
+    System.out.printf(Locale.ROOT, "Running %d players for %ds (%d stored players, economy latency %dms)%n",
+        this.options.players, this.options.durationSeconds, this.options.storedPlayers, this.options.economyLatencyMs);
+    while (System.nanoTime() < end) {
+      long tickStarted = System.nanoTime();
+      for (SimulatedPlayer player : this.players)
+        step(player, tickStarted);
+      this.server.getScheduler().performOneTick();
+      trackSave();
+      this.tickTimes.record(System.nanoTime() - tickStarted);
+      nextTick += tickNanos;
+      long sleep = nextTick - System.nanoTime();
+      if (sleep > 0L) {
+        TimeUnit.NANOSECONDS.sleep(sleep);
+      } else {
+        // Behind schedule; do not try to catch up with a burst of ticks
+        this.overruns++;
+        nextTick = System.nanoTime();
+      }
+    }
+    long elapsedNanos = System.nanoTime() - started;
+    long allocated = this.threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+    drain();
+    report(elapsedNanos, allocated, gcCount() - gcCountBefore, gcTimeMs() - gcTimeBefore);
+  }
+
+  /**
+   * Keeps ticking until the withdrawals and purchases started in the last ticks have finished,
+   * so they are counted rather than reported as unsettled.
+   */
+  private void drain() throws InterruptedException {
+    long deadline = System.nanoTime() + SETTLE_TIMEOUT_NANOS;
+    boolean pending = true;
+    while (pending) {
+      this.server.getScheduler().performOneTick();
+      long now = System.nanoTime();
+      pending = false;
+      for (SimulatedPlayer player : this.players) {
+        settle(player, now, now >= deadline);
+        pending |= (player.pending != null);
+      }
+      if (pending)
+        TimeUnit.MILLISECONDS.sleep(this.options.tickMs);
+    }
+  }
+
+  private void tearDown() {
+    try {
+      if (this.plugin != null && this.plugin.isEnabled()) {
+        long started = System.nanoTime();
+        HeadlessPlugin.stop(this.plugin);
+        System.out.printf(Locale.ROOT, "Shutdown: %.1f ms%n", (System.nanoTime() - started) / 1000000.0D);
+      }
+      if (this.plugin != null)
+        Fixtures.deleteRecursively(this.plugin.getDataFolder());
+    } finally {
+      if (this.server != null)
+        MockBukkit.unmock();
+    }
+  }
+
+  private void step(SimulatedPlayer sim, long now) {
+    if (sim.pending != null) {
+      settle(sim, now, false);
+      return;
+    }
+    PlayerMock player = sim.player;
+    if (!player.isOnline()) {
+      if (chance(this.options.reconnectRate))
+        reconnect(sim);
+      return;
+    }
+    if (!this.inventoryManager.hasStorageOpen(player)) {
+      if (chance(this.options.openRate)) {
+        open(sim);
+      } else if (chance(this.options.disconnectRate)) {
+        disconnect(sim);
+      }
+      return;
+    }
+    // One action per tick, picked in proportion to the rates
+    double perTick = this.options.tickMs / 1000.0D;
+    double roll = this.random.nextDouble();
+    if ((roll -= this.options.depositRate * perTick) < 0.0D) {
+      deposit(sim);
+    } else if ((roll -= this.options.withdrawRate * perTick) < 0.0D) {
+      withdraw(sim, now);
+    } else if ((roll -= this.options.purchaseRate * perTick) < 0.0D) {
+      purchase(sim, now);
+    } else if ((roll -= this.options.closeRate * perTick) < 0.0D) {
+      close(sim);
+    } else if ((roll -= this.options.disconnectRate * perTick) < 0.0D) {
+      disconnect(sim);
+    }
+  }
+
+  private boolean chance(double perSecond) {
+    return this.random.nextDouble() < perSecond * this.options.tickMs / 1000.0D;
+  }
+
+  private void open(SimulatedPlayer sim) {
+    long started = begin();
+    this.storageManager.openStorage(sim.player);
+    end(Op.OPEN, started);
+    count(Op.OPEN, this.inventoryManager.hasStorageOpen(sim.player) ? "opened" : "refused");
+  }
+
+  private void deposit(SimulatedPlayer sim) {
+    PlayerStorageData data = this.dataManager.getPlayerData(sim.player.getUniqueId());
+    Inventory top = sim.player.getOpenInventory().getTopInventory();
+    int slot = -1;
+    for (int i = 0; i < top.getSize() && slot < 0; i++) {
+      ItemStack current = top.getItem(i);
+      if (data.hasSlotUnlocked(i) && !data.isSlotReserved(i) && (current == null || current.getType().isAir()))
+        slot = i;
+    }
+    if (slot < 0) {
+      count(Op.DEPOSIT, "no-free-slot");
+      return;
+    }
+    ItemStack item = Fixtures.randomItem(this.random);
+    sim.player.setItemOnCursor(item);
+    long started = begin();
+    InventoryClickEvent event = click(sim, slot, InventoryAction.PLACE_ALL);
+    end(Op.DEPOSIT, started);
+    // The plugin lets deposits through to vanilla; apply what the server would
+    if (!event.isCancelled()) {
+      top.setItem(slot, item);
+      count(Op.DEPOSIT, "placed");
+    } else {
+      count(Op.DEPOSIT, "rejected");
+    }
+    sim.player.setItemOnCursor(null);
+  }
+
+  private void withdraw(SimulatedPlayer sim, long now) {
+    PlayerStorageData data = this.dataManager.getPlayerData(sim.player.getUniqueId());
+    List<Integer> stored = new ArrayList<>();
+    for (Integer slot : data.getItems().keySet()) {
+      if (!data.isSlotReserved(slot.intValue()))
+        stored.add(slot);
+    }
+    if (stored.isEmpty()) {
+      count(Op.WITHDRAW, "nothing-stored");
+      return;
+    }
+    int slot = stored.get(this.random.nextInt(stored.size())).intValue();
+    sim.player.setItemOnCursor(null);
+    long started = begin();
+    InventoryClickEvent event = click(sim, slot, InventoryAction.PICKUP_ALL);
+    end(Op.WITHDRAW, started);
+    if (!event.isCancelled()) {
+      // A stored item must never be handed to vanilla; that would skip the fee
+      count(Op.WITHDRAW, "not-intercepted");
+      return;
+    }
+    sim.start(Op.WITHDRAW, slot, now);
+  }
+
+  private void purchase(SimulatedPlayer sim, long now) {
+    PlayerStorageData data = this.dataManager.getPlayerData(sim.player.getUniqueId());
+    int slot = -1;
+    for (int i = 0; i < 9 && slot < 0; i++) {
+      if (!data.hasSlotUnlocked(i))
+        slot = i;
+    }
+    if (slot < 0) {
+      count(Op.PURCHASE, "all-unlocked");
+      return;
+    }
+    sim.player.setItemOnCursor(null);
+    long started = begin();
+    InventoryClickEvent event = click(sim, slot, InventoryAction.PICKUP_ALL);
+    end(Op.PURCHASE, started);
+    if (!event.isCancelled()) {
+      count(Op.PURCHASE, "not-intercepted");
+      return;
+    }
+    sim.start(Op.PURCHASE, slot, now);
+  }
+
+  private void close(SimulatedPlayer sim) {
+    long started = begin();
+    sim.player.closeInventory();
+    end(Op.CLOSE, started);
+    count(Op.CLOSE, "closed");
+  }
+
+  private void disconnect(SimulatedPlayer sim) {
+    long started = begin();
+    // The server closes the open inventory before the quit event
+    if (this.inventoryManager.hasStorageOpen(sim.player))
+      sim.player.closeInventory();
+    sim.player.disconnect();
+    end(Op.DISCONNECT, started);
+    count(Op.DISCONNECT, "disconnected");
+  }
+
+  private void reconnect(SimulatedPlayer sim) {
+    long started = begin();
+    sim.player.reconnect();
+    end(Op.RECONNECT, started);
+    count(Op.RECONNECT, "reconnected");
+  }
+
+  private InventoryClickEvent click(SimulatedPlayer sim, int slot, InventoryAction action) {
+    InventoryClickEvent event = new InventoryClickEvent(sim.player.getOpenInventory(), InventoryType.SlotType.CONTAINER, slot, ClickType.LEFT, action);
+    this.server.getPluginManager().callEvent(event);
+    return event;
+  }
+
+  /**
+   * Checks whether the player's withdrawal or purchase has finished. Withdrawals hold a
+   * reservation on the slot until the fee is settled; purchases are done once the slot unlocks.
+   */
+  private void settle(SimulatedPlayer sim, long now, boolean finalCheck) {
+    if (sim.pending == null)
+      return;
+    PlayerStorageData data = this.dataManager.getPlayerData(sim.player.getUniqueId());
+    String outcome = null;
+    if (sim.pending == Op.WITHDRAW && !data.isSlotReserved(sim.pendingSlot)) {
+      ItemStack left = data.getItem(sim.pendingSlot);
+      outcome = (left == null || left.getType().isAir()) ? "withdrawn" : "declined";
+      // Keep the player's inventory from filling up and refusing later withdrawals
+      sim.player.getInventory().clear();
+    } else if (sim.pending == Op.PURCHASE && data.hasSlotUnlocked(sim.pendingSlot)) {
+      outcome = "purchased";
+    }
+    if (outcome == null) {
+      if (!finalCheck && now - sim.pendingStarted < SETTLE_TIMEOUT_NANOS)
+        return;
+      outcome = "unsettled";
+    } else {
+      this.settleTimes.get(sim.pending).record(now - sim.pendingStarted);
+    }
+    count(sim.pending, outcome);
+    sim.pending = null;
+  }
+
+  private void trackSave() {
+    boolean running = this.dataManager.isSaveRunning();
+    if (running && this.saveStarted == 0L) {
+      this.saveStarted = System.nanoTime();
+    } else if (!running && this.saveStarted != 0L) {
+      this.saveTimes.record(System.nanoTime() - this.saveStarted);
+      this.saveStarted = 0L;
+    }
+  }
+
+  private long begin() {
+    this.operationAllocated = this.threads.getCurrentThreadAllocatedBytes();
+    return System.nanoTime();
+  }
+
+  private void end(Op op, long started) {
+    this.handlerTimes.get(op).record(System.nanoTime() - started);
+    this.allocatedBytes.get(op)[0] += this.threads.getCurrentThreadAllocatedBytes() - this.operationAllocated;
+  }
+
+  private void count(Op op, String outcome) {
+    this.outcomes.merge(op.name().toLowerCase(Locale.ROOT) + " " + outcome, Integer.valueOf(1), Integer::sum);
+  }
+
+  private void report(long elapsedNanos, long allocated, long gcCount, long gcTimeMs) {
+    double seconds = elapsedNanos / 1.0E9D;
+    System.out.println();
+    System.out.println("Handler time (event call on the main thread)");
+    for (Op op : Op.values()) {
+      LatencyRecorder times = this.handlerTimes.get(op);
+      long perCall = (times.getCount() > 0) ? this.allocatedBytes.get(op)[0] / times.getCount() : 0L;
+      System.out.printf(Locale.ROOT, "  %-10s %s, %d B/call%n", op.name().toLowerCase(Locale.ROOT), times.summary(), Long.valueOf(perCall));
+    }
+    System.out.println("Completion time (click to result, tick granularity)");
+    for (Map.Entry<Op, LatencyRecorder> entry : this.settleTimes.entrySet())
+      System.out.printf(Locale.ROOT, "  %-10s %s%n", entry.getKey().name().toLowerCase(Locale.ROOT), entry.getValue().summary());
+    System.out.println("Outcomes");
+    for (Map.Entry<String, Integer> entry : this.outcomes.entrySet())
+      System.out.printf(Locale.ROOT, "  %-28s %d%n", entry.getKey(), entry.getValue());
+    System.out.printf(Locale.ROOT, "Ticks: %s, %d overran %dms%n", this.tickTimes.summary(), Integer.valueOf(this.overruns), Long.valueOf(this.options.tickMs));
+    System.out.printf(Locale.ROOT, "Saves: %s%n", this.saveTimes.summary());
+    for (Map.Entry<String, String> entry : this.plugin.getSaveScheduler().describe().entrySet())
+      System.out.printf(Locale.ROOT, "  %s: %s%n", entry.getKey(), entry.getValue());
+    System.out.printf(Locale.ROOT, "Main thread allocation: %.1f MB/s (%.1f MB total)%n",
+        allocated / 1048576.0D / seconds, allocated / 1048576.0D);
+    System.out.printf(Locale.ROOT, "GC: %d collections, %d ms%n", Long.valueOf(gcCount), Long.valueOf(gcTimeMs));
+    System.out.printf(Locale.ROOT, "Economy calls: %d (%.1f/s)%n", Long.valueOf(this.economy.getCalls()), this.economy.getCalls() / seconds);
+  }
+
+  private static long gcCount() {
+    long total = 0L;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+      total += Math.max(0L, collector.getCollectionCount());
+    return total;
+  }
+
+  private static long gcTimeMs() {
+    long total = 0L;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans())
+      total += Math.max(0L, collector.getCollectionTime());
+    return total;
+  }
+
+  private static final class SimulatedPlayer {
+    private final PlayerMock player;
+
+    private Op pending;
+
+    private int pendingSlot;
+
+    private long pendingStarted;
+
+    private SimulatedPlayer(PlayerMock player) {
+      this.player = player;
+    }
+
+    private void start(Op op, int slot, long now) {
+      this.pending = op;
+      this.pendingSlot = slot;
+      this.pendingStarted = now;
+    }
+  }
+
+  /**
+   * Command-line options, each given as {@code --name=value}. Rates are per player per second.
+   */
+  private static final class Options {
+    private int players = 100;
+
+    private int storedPlayers = 10000;
+
+    private int durationSeconds = 60;
+
+    private long tickMs = 50L;
+
+    private double openRate = 0.2D;
+
+    private double depositRate = 0.5D;
+
+    private double withdrawRate = 0.5D;
+
+    private double purchaseRate = 0.05D;
+
+    private double closeRate = 0.1D;
+
+    private double disconnectRate = 0.01D;
+
+    private double reconnectRate = 0.1D;
+
+    private long economyLatencyMs = 20L;
+
+    private int saveIntervalSeconds = 60;
+
+    private int idleFlushSeconds = 5;
+
+    private long seed = 42L;
+
+    private static Options parse(String[] args) {
+      Options options = new Options();
+      for (String arg : args) {
+        int equals = arg.indexOf('=');
+        if (!arg.startsWith("--") || equals < 0)
+          throw new IllegalArgumentException("Expected --name=value, got " + arg + "\n" + usage());
+        String name = arg.substring(2, equals);
+        String value = arg.substring(equals + 1);
+        switch (name) {
+          case "players" -> options.players = Integer.parseInt(value);
+          case "stored-players" -> options.storedPlayers = Integer.parseInt(value);
+          case "duration" -> options.durationSeconds = Integer.parseInt(value);
+          case "tick-ms" -> options.tickMs = Long.parseLong(value);
+          case "open-rate" -> options.openRate = Double.parseDouble(value);
+          case "deposit-rate" -> options.depositRate = Double.parseDouble(value);
+          case "withdraw-rate" -> options.withdrawRate = Double.parseDouble(value);
+          case "purchase-rate" -> options.purchaseRate = Double.parseDouble(value);
+          case "close-rate" -> options.closeRate = Double.parseDouble(value);
+          case "disconnect-rate" -> options.disconnectRate = Double.parseDouble(value);
+          case "reconnect-rate" -> options.reconnectRate = Double.parseDouble(value);
+          case "economy-latency-ms" -> options.economyLatencyMs = Long.parseLong(value);
+          case "save-interval" -> options.saveIntervalSeconds = Integer.parseInt(value);
+          case "idle-flush-after" -> options.idleFlushSeconds = Integer.parseInt(value);
+          case "seed" -> options.seed = Long.parseLong(value);
+          default -> throw new IllegalArgumentException("Unknown option --" + name + "\n" + usage());
+        }
+      }
+      if (options.players < 1 || options.durationSeconds < 1 || options.tickMs < 1L)
+        throw new IllegalArgumentException("players, duration and tick-ms must be positive\n" + usage());
+      return options;
+    }
+
+    private static String usage() {
+      return "Options: --players --stored-players --duration (s) --tick-ms --open-rate --deposit-rate --withdraw-rate"
+          + " --purchase-rate --close-rate --disconnect-rate --reconnect-rate (per player per second)"
+          + " --economy-latency-ms --save-interval (s, min 60) --idle-flush-after (s, min 5) --seed";
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package dev.lsdmc.bench;
+
+import com.google.gson.JsonObject;
+import dev.lsdmc.ItemIndex;
+import dev.lsdmc.PlayerStorageData;
+import dev.lsdmc.StorageStats;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.bukkit.inventory.ItemStack;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Slot ownership and item operations on one player's storage, with the item index and
+ * statistics attached as they are on a live server, so their bookkeeping is included.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayerStorageDataBenchmark {
+  private static final int STACKS = 64;
+
+  private PlayerStorageData data;
+
+  private ItemStack[] stacks;
+
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    HeadlessServer.mock();
+    Random random = new Random(7L);
+    this.stacks = new ItemStack[STACKS];
+    for (int i = 0; i < STACKS; i++)
+      this.stacks[i] = Fixtures.randomItem(random);
+    this.data = new PlayerStorageData(UUID.randomUUID());
+    this.data.attach(new ItemIndex(), new StorageStats());
+    for (int slot = 0; slot < 8; slot++) {
+      this.data.unlockSlot(slot);
+      this.data.setItem(slot, this.stacks[slot]);
+    }
+    for (int slot = 11; slot <= 15; slot++)
+      this.data.unlockDonorSlot(slot);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    MockBukkit.unmock();
+  }
+
+  @Benchmark
+  public void setItem() {
+    int i = this.next++ & (STACKS - 1);
+    this.data.setItem(i & 7, this.stacks[i]);
+  }
+
+  @Benchmark
+  public void setAndClearDonorItem() {
+    int i = this.next++ & (STACKS - 1);
+    this.data.setItem(11, this.stacks[i]);
+    this.data.setItem(11, null);
+  }
+
+  @Benchmark
+  public void unlockAndLockSlot() {
+    this.data.unlockSlot(8);
+    this.data.lockSlot(8);
+  }
+
+  @Benchmark
+  public int hasSlotUnlocked() {
+    int unlocked = 0;
+    for (int slot = 0; slot < 18; slot++) {
+      if (this.data.hasSlotUnlocked(slot))
+        unlocked++;
+    }
+    return unlocked;
+  }
+
+  @Benchmark
+  public ItemStack getItem() {
+    return this.data.getItem(this.next++ & 7);
+  }
+
+  @Benchmark
+  public List<ItemStack> getAllItems() {
+    return this.data.getAllItems();
+  }
+
+  @Benchmark
+  public boolean reserveAndRelease() {
+    PlayerStorageData.WithdrawalReservation reservation = this.data.reserveSlot(0, 10.0D, 0L);
+    return reservation != null && this.data.releaseReservation(reservation);
+  }
+
+  @Benchmark
+  public JsonObject serialize() {
+    JsonObject json = new JsonObject();
+    this.data.serialize(json);
+    return json;
+  }
+}
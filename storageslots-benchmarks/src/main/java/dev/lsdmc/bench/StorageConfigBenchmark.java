@@ -0,0 +1,88 @@
+package dev.lsdmc.bench;
+
+import dev.lsdmc.StorageConfig;
+import dev.lsdmc.StorageSlots;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.kyori.adventure.text.Component;
+import org.bukkit.entity.Player;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Withdrawal fee lookups and message rendering, both called for every slot of every GUI render.
+ * Fee lookups are measured cached (the normal case), with only the fee cache cleared, and with
+ * the donor rank cache cleared too, as right after a permission change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageConfigBenchmark {
+  private StorageSlots plugin;
+
+  private StorageConfig config;
+
+  private Player player;
+
+  private Player donor;
+
+  private final Map<String, String> placeholders = Map.of("slot", "4", "cost", "1,500", "currency", "points");
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    HeadlessServer server = HeadlessServer.mock();
+    this.plugin = Fixtures.startPlugin(server, Fixtures.quietConfig());
+    this.config = this.plugin.getConfigManager();
+    this.player = server.addPlayer("Regular");
+    this.donor = server.addPlayer("Donor");
+    this.donor.addAttachment(this.plugin, "storageslots.donor.mvp", true);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    HeadlessPlugin.stop(this.plugin);
+    Fixtures.deleteRecursively(this.plugin.getDataFolder());
+    MockBukkit.unmock();
+  }
+
+  @Benchmark
+  public StorageConfig.WithdrawalFee withdrawalFeeCached() {
+    return this.config.getWithdrawalFee(this.player);
+  }
+
+  @Benchmark
+  public StorageConfig.WithdrawalFee withdrawalFeeResolved() {
+    this.config.invalidateWithdrawalFee(this.donor.getUniqueId());
+    return this.config.getWithdrawalFee(this.donor);
+  }
+
+  @Benchmark
+  public StorageConfig.WithdrawalFee withdrawalFeeCold() {
+    this.config.invalidatePlayerCache(this.donor.getUniqueId());
+    return this.config.getWithdrawalFee(this.donor);
+  }
+
+  @Benchmark
+  public Component message() {
+    return this.config.getMessage("storage-opened");
+  }
+
+  @Benchmark
+  public Component messageWithPlaceholders() {
+    return this.config.getMessage("slot-purchased", this.placeholders);
+  }
+}
@@ -0,0 +1,127 @@
+package dev.lsdmc.bench;
+
+import dev.lsdmc.StorageDataManager;
+import dev.lsdmc.StorageSlots;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * storage.yml save and load at different player counts. Every call is a full pass over the
+ * data, so each one is timed on its own.
+ *
+ * <ul>
+ *   <li>{@code saveAll}: full save of every player, as after /storagedelete all;</li>
+ *   <li>{@code saveDirty}: the usual auto-save, one percent of players changed;</li>
+ *   <li>{@code saveDirtyMainThread}: the main thread's share of {@code saveDirty}, serializing the
+ *       changed players and handing the file to the IO thread, which should not grow with the
+ *       number of players;</li>
+ *   <li>{@code load}: startup, reading storage.yml back into memory.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+public class StorageDataManagerBenchmark {
+  @Param({ "1000", "10000", "100000" })
+  public int players;
+
+  private StorageSlots plugin;
+
+  private StorageDataManager dataManager;
+
+  private List<UUID> playerIds;
+
+  private int nextDirty;
+
+  private List<UUID> dirtyIds;
+
+  private CompletableFuture<Boolean> pendingWrite;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    HeadlessServer server = HeadlessServer.mock();
+    this.plugin = Fixtures.startPlugin(server, Fixtures.quietConfig());
+    this.dataManager = this.plugin.getStorageManager().getDataManager();
+    this.playerIds = Fixtures.populate(this.dataManager, this.players, 42L);
+    this.dataManager.saveData();
+    if (this.dataManager.isSavePending())
+      throw new IllegalStateException("Initial save of " + this.players + " players failed");
+    // Guards against measuring a load that silently skips everything
+    StorageDataManager check = load();
+    if (check.getAllStoredPlayerIds().size() != this.players)
+      throw new IllegalStateException("Loaded " + check.getAllStoredPlayerIds().size() + " of " + this.players + " players");
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    HeadlessPlugin.stop(this.plugin);
+    Fixtures.deleteRecursively(this.plugin.getDataFolder());
+    MockBukkit.unmock();
+  }
+
+  @Setup(Level.Invocation)
+  public void markOnePercentDirty() {
+    int count = Math.max(1, this.players / 100);
+    this.dirtyIds = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      UUID playerId = this.playerIds.get(this.nextDirty);
+      this.dataManager.markDirty(playerId);
+      this.dirtyIds.add(playerId);
+      this.nextDirty = (this.nextDirty + 1) % this.playerIds.size();
+    }
+  }
+
+  @Benchmark
+  public void saveAll() {
+    this.dataManager.markDirty();
+    this.dataManager.saveData();
+  }
+
+  @Benchmark
+  public void saveDirty() {
+    this.dataManager.saveData();
+  }
+
+  @Benchmark
+  public CompletableFuture<Boolean> saveDirtyMainThread() {
+    this.pendingWrite = this.dataManager.flushPlayers(this.dirtyIds);
+    return this.pendingWrite;
+  }
+
+  // Outside the measurement, so the next call does not queue behind this write
+  @TearDown(Level.Invocation)
+  public void awaitWrite() {
+    if (this.pendingWrite != null) {
+      if (!this.pendingWrite.join().booleanValue())
+        throw new IllegalStateException("storage.yml write failed");
+      this.pendingWrite = null;
+    }
+  }
+
+  @Benchmark
+  public StorageDataManager load() {
+    StorageDataManager loaded = new StorageDataManager(this.plugin);
+    loaded.shutdown();
+    return loaded;
+  }
+}